@@ -0,0 +1,61 @@
+package dev.aisandbox.twistyeditor.benchmark;
+
+import dev.aisandbox.twistyeditor.model.AlgorithmCompiler;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Replaying a named sequence move by move, against the cached compiled sequence. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlgorithmBenchmark {
+
+  @Param({"R U R' U'", "R U R' U' R' F R2 U' R' U' R U R' F'"})
+  String sequence;
+
+  CompiledMove[] moves;
+  AlgorithmCompiler compiler;
+  byte[] state;
+
+  @Setup
+  public void setup() {
+    Puzzle puzzle = BenchmarkPuzzles.load("Cube3.tp");
+    List<String> names = AlgorithmCompiler.parse(sequence);
+    moves = new CompiledMove[names.size()];
+    for (int i = 0; i < moves.length; i++) {
+      moves[i] = puzzle.getCompiledMoves().get(names.get(i));
+    }
+    compiler = new AlgorithmCompiler(puzzle);
+    state = puzzle.getInitialState();
+  }
+
+  @Benchmark
+  public byte[] replayMoves() {
+    for (CompiledMove move : moves) {
+      move.applyMove(state);
+    }
+    return state;
+  }
+
+  @Benchmark
+  public byte[] compiledSequence() {
+    compiler.compile(sequence).applyMove(state);
+    return state;
+  }
+}
@@ -0,0 +1,30 @@
+package dev.aisandbox.twistyeditor.benchmark;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.Cell;
+import dev.aisandbox.twistyeditor.model.CuboidBuilder;
+import dev.aisandbox.twistyeditor.model.Move;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.io.IOException;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/** Shared puzzle setup for the benchmarks, run from the project root. */
+public class BenchmarkPuzzles {
+
+  private BenchmarkPuzzles() {}
+
+  public static Puzzle load(String filename) {
+    return (Puzzle) PuzzleUtil.getCodec().fromXML(new File(filename));
+  }
+
+  public static Puzzle cuboid(int width, int height, int depth) throws IOException {
+    Puzzle puzzle = new Puzzle();
+    ObservableList<Cell> cells = FXCollections.observableList(puzzle.getCells());
+    ObservableList<Move> moves = FXCollections.observableList(puzzle.getMoves());
+    new CuboidBuilder(cells, moves, width, height, depth).createCuboid();
+    puzzle.centerCells();
+    return puzzle;
+  }
+}
@@ -0,0 +1,89 @@
+package dev.aisandbox.twistyeditor.benchmark;
+
+import com.thoughtworks.xstream.XStream;
+import dev.aisandbox.twistyeditor.BinaryPuzzleCodec;
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.StreamingPuzzleLoader;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** XStream, streaming and binary load and save of the bundled puzzles, from and to memory. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+  @Param({"Cube3.tp", "Pyramid3.tp"})
+  String filename;
+
+  XStream xstream;
+  String xml;
+  String indexedXml;
+  Puzzle puzzle;
+  byte[] binary;
+
+  @Setup
+  public void setup() throws IOException {
+    xstream = PuzzleUtil.getCodec();
+    xml = new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
+    puzzle = (Puzzle) xstream.fromXML(xml);
+    indexedXml = save();
+    binary = saveBinary();
+  }
+
+  @Benchmark
+  public Object load() {
+    return xstream.fromXML(xml);
+  }
+
+  /** Load the puzzle as it is saved now, with loops as cell indices rather than references. */
+  @Benchmark
+  public Object loadIndexed() {
+    return xstream.fromXML(indexedXml);
+  }
+
+  @Benchmark
+  public Object loadStreaming() throws IOException {
+    return StreamingPuzzleLoader.load(
+        new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+        StreamingPuzzleLoader.ATTACH);
+  }
+
+  @Benchmark
+  public String save() {
+    return xstream.toXML(puzzle);
+  }
+
+  @Benchmark
+  public Object loadBinary() throws IOException {
+    return BinaryPuzzleCodec.read(ByteBuffer.wrap(binary));
+  }
+
+  @Benchmark
+  public byte[] saveBinary() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryPuzzleCodec.write(puzzle, out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,52 @@
+package dev.aisandbox.twistyeditor.benchmark;
+
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Time to compile the moves of an NxNxN cube, from scratch and after editing one move. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompileMovesBenchmark {
+
+  @Param({"2", "3", "5", "10"})
+  int size;
+
+  @Param({"false", "true"})
+  boolean parallel;
+
+  Puzzle puzzle;
+
+  @Setup
+  public void setup() throws IOException {
+    puzzle = BenchmarkPuzzles.cuboid(size, size, size);
+  }
+
+  @Benchmark
+  public Optional<String> compileMoves() {
+    puzzle.invalidateCompiledMoves();
+    return puzzle.compileMoves(parallel);
+  }
+
+  @Benchmark
+  public Optional<String> recompileOneMove() {
+    puzzle.getMoves().get(0).markDirty();
+    return puzzle.compileMoves(parallel);
+  }
+}
@@ -0,0 +1,77 @@
+package dev.aisandbox.twistyeditor.benchmark;
+
+import dev.aisandbox.twistyeditor.model.ColourEnum;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single move on each state representation. Run with {@code -prof gc} to check the
+ * byte[] paths report zero {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledMoveBenchmark {
+
+  @Param({"Cube3.tp", "Pyramid3.tp"})
+  String filename;
+
+  CompiledMove[] moves;
+  String stringState;
+  byte[] state;
+  byte[] next;
+  int step = 0;
+
+  @Setup
+  public void setup() {
+    Puzzle puzzle = BenchmarkPuzzles.load(filename);
+    moves = puzzle.getCompiledMoves().values().toArray(new CompiledMove[0]);
+    state = puzzle.getInitialState();
+    next = new byte[state.length];
+    stringState = ColourEnum.decodeState(state);
+  }
+
+  private CompiledMove nextMove() {
+    step++;
+    if (step == moves.length) {
+      step = 0;
+    }
+    return moves[step];
+  }
+
+  @Benchmark
+  public String applyMoveString() {
+    stringState = nextMove().applyMove(stringState);
+    return stringState;
+  }
+
+  @Benchmark
+  public byte[] applyMoveBytes() {
+    nextMove().applyMove(state, next);
+    byte[] swap = state;
+    state = next;
+    next = swap;
+    return state;
+  }
+
+  @Benchmark
+  public byte[] applyMoveInPlace() {
+    nextMove().applyMove(state);
+    return state;
+  }
+}
@@ -0,0 +1,33 @@
+package dev.aisandbox.twistyeditor.benchmark;
+
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Generating cubes across the same 2..10 range as the export tests. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CuboidBuilderBenchmark {
+
+  @Param({"2", "3", "4", "5", "6", "7", "8", "9", "10"})
+  int size;
+
+  @Benchmark
+  public Puzzle createCuboid() throws IOException {
+    return BenchmarkPuzzles.cuboid(size, size, size);
+  }
+}
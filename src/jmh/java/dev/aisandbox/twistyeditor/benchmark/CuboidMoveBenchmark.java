@@ -0,0 +1,67 @@
+package dev.aisandbox.twistyeditor.benchmark;
+
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Byte[] moves on generated NxNxN cubes, where most moves only touch a few of the cells. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CuboidMoveBenchmark {
+
+  @Param({"3", "5", "10"})
+  int size;
+
+  CompiledMove[] moves;
+  byte[] state;
+  byte[] next;
+  int step = 0;
+
+  @Setup
+  public void setup() throws IOException {
+    Puzzle puzzle = BenchmarkPuzzles.cuboid(size, size, size);
+    puzzle.compileMoves();
+    moves = puzzle.getCompiledMoves().values().toArray(new CompiledMove[0]);
+    state = puzzle.getInitialState();
+    next = new byte[state.length];
+  }
+
+  private CompiledMove nextMove() {
+    step++;
+    if (step == moves.length) {
+      step = 0;
+    }
+    return moves[step];
+  }
+
+  @Benchmark
+  public byte[] applyMoveBytes() {
+    nextMove().applyMove(state, next);
+    byte[] swap = state;
+    state = next;
+    next = swap;
+    return state;
+  }
+
+  @Benchmark
+  public byte[] applyMoveInPlace() {
+    nextMove().applyMove(state);
+    return state;
+  }
+}
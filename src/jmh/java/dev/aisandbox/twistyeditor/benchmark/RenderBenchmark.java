@@ -0,0 +1,62 @@
+package dev.aisandbox.twistyeditor.benchmark;
+
+import dev.aisandbox.twistyeditor.model.Cell;
+import dev.aisandbox.twistyeditor.model.Move;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Editor drawing and hit testing. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+  @Param({"Cube3.tp", "Pyramid3.tp"})
+  String filename;
+
+  Puzzle puzzle;
+  Cell highlight;
+  Move move;
+  int x;
+  int y;
+
+  @Setup
+  public void setup() {
+    puzzle = BenchmarkPuzzles.load(filename);
+    // highlight and click on the last cell, so findCell has to check them all
+    highlight = puzzle.getCells().get(puzzle.getCells().size() - 1);
+    x = highlight.getLocationX();
+    y = highlight.getLocationY();
+    move = puzzle.getMoves().get(0);
+  }
+
+  @Benchmark
+  public BufferedImage getCellImage() {
+    return puzzle.getCellImage(highlight);
+  }
+
+  @Benchmark
+  public BufferedImage getMoveImage() {
+    return puzzle.getMoveImage(move, move.getLoops().get(0));
+  }
+
+  @Benchmark
+  public Cell findCell() {
+    return puzzle.findCell(x, y);
+  }
+}
@@ -0,0 +1,99 @@
+package dev.aisandbox.twistyeditor.benchmark;
+
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import dev.aisandbox.twistyeditor.model.StateBatch;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Random rollouts on a batch of 3x3x3 states, each operation is one move applied to one state so
+ * the score is states per second. Compares one array per state against a {@link StateBatch}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(StateBatchBenchmark.BATCH)
+public class StateBatchBenchmark {
+
+  static final int BATCH = 4096;
+
+  @Param({"Cube3.tp"})
+  String filename;
+
+  CompiledMove[] moves;
+  CompiledMove[][] rowMoves;
+  byte[][] separate;
+  byte[][] next;
+  StateBatch batch;
+  int step = 0;
+
+  @Setup
+  public void setup() {
+    Puzzle puzzle = BenchmarkPuzzles.load(filename);
+    moves = puzzle.getCompiledMoves().values().toArray(new CompiledMove[0]);
+    byte[] initial = puzzle.getInitialState();
+    separate = new byte[BATCH][];
+    next = new byte[BATCH][];
+    for (int i = 0; i < BATCH; i++) {
+      separate[i] = initial.clone();
+      next[i] = new byte[initial.length];
+    }
+    batch = new StateBatch(initial, BATCH);
+    // a few rounds of random moves, reused in turn
+    Random random = new Random(1);
+    rowMoves = new CompiledMove[16][BATCH];
+    for (CompiledMove[] round : rowMoves) {
+      for (int i = 0; i < BATCH; i++) {
+        round[i] = moves[random.nextInt(moves.length)];
+      }
+    }
+  }
+
+  private CompiledMove[] nextRound() {
+    step++;
+    if (step == rowMoves.length) {
+      step = 0;
+    }
+    return rowMoves[step];
+  }
+
+  @Benchmark
+  public byte[][] separateStates() {
+    CompiledMove[] round = nextRound();
+    for (int i = 0; i < BATCH; i++) {
+      round[i].applyMove(separate[i], next[i]);
+    }
+    byte[][] swap = separate;
+    separate = next;
+    next = swap;
+    return separate;
+  }
+
+  @Benchmark
+  public byte[] batchSameMove() {
+    batch.applyMove(nextRound()[0]);
+    return batch.getStates();
+  }
+
+  @Benchmark
+  public byte[] batchRowMoves() {
+    batch.applyMoves(nextRound());
+    return batch.getStates();
+  }
+}
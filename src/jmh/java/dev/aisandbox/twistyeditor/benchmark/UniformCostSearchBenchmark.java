@@ -0,0 +1,99 @@
+package dev.aisandbox.twistyeditor.benchmark;
+
+import dev.aisandbox.twistyeditor.model.AlgorithmCompiler;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.PackedState;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import dev.aisandbox.twistyeditor.solver.Solution;
+import dev.aisandbox.twistyeditor.solver.UniformCostSearch;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Solving a three move scramble of the cube, with its free rotations, using the bucket queue
+ * search against the same search written with a {@link PriorityQueue} and a {@link HashMap}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UniformCostSearchBenchmark {
+
+  Puzzle cube;
+  CompiledMove position;
+  UniformCostSearch search;
+
+  @Setup
+  public void setup() {
+    cube = BenchmarkPuzzles.load("Cube3.tp");
+    cube.compileMoves();
+    position = new AlgorithmCompiler(cube).compile("F R2 D'");
+    search = new UniformCostSearch(cube);
+  }
+
+  @Benchmark
+  public Solution bucketQueue() {
+    return search.solve(position).get();
+  }
+
+  @Benchmark
+  public int priorityQueue() {
+    CompiledMove[] moves = cube.getCompiledMoves().values().toArray(new CompiledMove[0]);
+    PackedState goal = cube.getSolvedState();
+    byte[] start = cube.getInitialState();
+    position.applyMove(start);
+    Map<PackedState, Integer> best = new HashMap<>();
+    PriorityQueue<Node> open = new PriorityQueue<>(Comparator.comparingInt(node -> node.cost));
+    PackedState first = PackedState.of(start);
+    best.put(first, 0);
+    open.add(new Node(first, 0));
+    byte[] state = new byte[start.length];
+    byte[] next = new byte[start.length];
+    while (!open.isEmpty()) {
+      Node node = open.poll();
+      if (node.cost > best.get(node.state)) {
+        continue;
+      }
+      if (node.state.equals(goal)) {
+        return node.cost;
+      }
+      node.state.toBytes(state);
+      for (CompiledMove move : moves) {
+        move.applyMove(state, next);
+        PackedState child = PackedState.of(next);
+        int cost = node.cost + move.getCost();
+        Integer known = best.get(child);
+        if (known == null || cost < known) {
+          best.put(child, cost);
+          open.add(new Node(child, cost));
+        }
+      }
+    }
+    return -1;
+  }
+
+  static class Node {
+    final PackedState state;
+    final int cost;
+
+    Node(PackedState state, int cost) {
+      this.state = state;
+      this.cost = cost;
+    }
+  }
+}
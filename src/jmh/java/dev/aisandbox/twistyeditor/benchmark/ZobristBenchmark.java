@@ -0,0 +1,75 @@
+package dev.aisandbox.twistyeditor.benchmark;
+
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import dev.aisandbox.twistyeditor.model.ZobristHash;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Keeping a state's hash up to date through the sparse moves of a big cube, by hashing the whole
+ * state after each move or by updating a Zobrist hash as the move is applied. Only the outer
+ * layer turns of a 10x10x10 are sparse, smaller cubes have none.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZobristBenchmark {
+
+  @Param({"10"})
+  int size;
+
+  CompiledMove[] moves;
+  byte[] state;
+  ZobristHash keys;
+  long hash;
+  int step = 0;
+
+  @Setup
+  public void setup() throws IOException {
+    Puzzle puzzle = BenchmarkPuzzles.cuboid(size, size, size);
+    puzzle.compileMoves();
+    moves =
+        puzzle.getCompiledMoves().values().stream()
+            .filter(CompiledMove::isSparse)
+            .toArray(CompiledMove[]::new);
+    state = puzzle.getInitialState();
+    keys = new ZobristHash(state.length);
+    hash = keys.hash(state);
+  }
+
+  private CompiledMove nextMove() {
+    step++;
+    if (step == moves.length) {
+      step = 0;
+    }
+    return moves[step];
+  }
+
+  @Benchmark
+  public long rehash() {
+    nextMove().applyMove(state);
+    hash = keys.hash(state);
+    return hash;
+  }
+
+  @Benchmark
+  public long incremental() {
+    hash = nextMove().applyMove(state, keys, hash);
+    return hash;
+  }
+}
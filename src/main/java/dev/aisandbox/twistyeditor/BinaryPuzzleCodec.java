@@ -0,0 +1,358 @@
+package dev.aisandbox.twistyeditor;
+
+import dev.aisandbox.twistyeditor.model.Cell;
+import dev.aisandbox.twistyeditor.model.ColourEnum;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.LazyImage;
+import dev.aisandbox.twistyeditor.model.Loop;
+import dev.aisandbox.twistyeditor.model.Move;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import dev.aisandbox.twistyeditor.model.shapes.ShapeEnum;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes puzzles in a compact binary format (.tpb), holding the same content as the
+ * XStream XML from {@link PuzzleUtil#getCodec()} so a puzzle can go from one to the other and back
+ * unchanged.
+ *
+ * <p>The file is a header (magic, version, section count) followed by sections, each a tag and a
+ * byte length then its content, so readers can skip sections they don't know:
+ *
+ * <ul>
+ *   <li>ICON - each distinct image once, as PNG bytes, referred to by index (-1 for none)
+ *   <li>CELL - a fixed size record per cell
+ *   <li>MOVE - each move's name, cost, icon and loops, with loops as arrays of cell indices
+ *   <li>CMOV - each compiled move's name, cost, icon and matrix
+ * </ul>
+ *
+ * <p>Cell indices are written as shorts when the puzzle has few enough cells, and as ints
+ * otherwise. Each matrix has its own flag, as an old compiled move may hold entries that don't fit
+ * in a short, such as -1. Everything is big endian.
+ */
+public class BinaryPuzzleCodec {
+
+  // "TPBF"
+  static final int MAGIC = 0x54504246;
+  static final int VERSION = 1;
+
+  static final int ICON = 0x49434F4E;
+  static final int CELL = 0x43454C4C;
+  static final int MOVE = 0x4D4F5645;
+  static final int CMOV = 0x434D4F56;
+
+  private static final int SHORT_LIMIT = 0xFFFF;
+
+  private BinaryPuzzleCodec() {}
+
+  /**
+   * Write a puzzle.
+   *
+   * @param puzzle the puzzle
+   * @param out the stream to write to, this is not closed
+   * @throws IOException if the stream can't be written or an icon can't be encoded
+   */
+  public static void write(Puzzle puzzle, OutputStream out) throws IOException {
+    List<Cell> cells = puzzle.getCells();
+    Map<Cell, Integer> cellIndex = new IdentityHashMap<>(cells.size());
+    for (int i = 0; i < cells.size(); i++) {
+      cellIndex.put(cells.get(i), i);
+    }
+    // a move and its compiled move share the same image, so store it once
+    Map<LazyImage, Integer> iconIndex = new IdentityHashMap<>();
+    List<LazyImage> icons = new ArrayList<>();
+    for (Move move : puzzle.getMoves()) {
+      addIcon(move.getLazyImageIcon(), iconIndex, icons);
+    }
+    for (CompiledMove move : puzzle.getCompiledMoves().values()) {
+      addIcon(move.getLazyImage(), iconIndex, icons);
+    }
+    boolean wide = cells.size() > SHORT_LIMIT;
+
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    data.writeInt(4);
+
+    Section icon = new Section(ICON);
+    icon.data.writeInt(icons.size());
+    for (LazyImage image : icons) {
+      // loaded images are written back as they were, without encoding them again
+      byte[] png = image.getPng();
+      icon.data.writeInt(png.length);
+      icon.data.write(png);
+    }
+    icon.writeTo(data);
+
+    Section cell = new Section(CELL);
+    cell.data.writeInt(cells.size());
+    for (Cell c : cells) {
+      cell.data.writeByte(c.getShape() == null ? -1 : c.getShape().ordinal());
+      cell.data.writeByte(c.getColour() == null ? -1 : c.getColour().ordinal());
+      cell.data.writeInt(c.getScale());
+      cell.data.writeInt(c.getLocationX());
+      cell.data.writeInt(c.getLocationY());
+      cell.data.writeInt(c.getRotation());
+    }
+    cell.writeTo(data);
+
+    Section move = new Section(MOVE);
+    move.data.writeBoolean(wide);
+    move.data.writeInt(puzzle.getMoves().size());
+    for (Move m : puzzle.getMoves()) {
+      writeString(move.data, m.getName());
+      move.data.writeInt(m.getCost());
+      move.data.writeInt(indexOf(m.getLazyImageIcon(), iconIndex));
+      move.data.writeInt(m.getLoops().size());
+      for (Loop loop : m.getLoops()) {
+        move.data.writeInt(loop.getCells().size());
+        for (Cell c : loop.getCells()) {
+          Integer index = cellIndex.get(c);
+          if (index == null) {
+            throw new IllegalArgumentException(
+                "Move '" + m.getName() + "' has a loop with a cell that isn't in the puzzle");
+          }
+          writeIndex(move.data, index, wide);
+        }
+      }
+    }
+    move.writeTo(data);
+
+    Section compiled = new Section(CMOV);
+    compiled.data.writeInt(puzzle.getCompiledMoves().size());
+    for (Map.Entry<String, CompiledMove> entry : puzzle.getCompiledMoves().entrySet()) {
+      CompiledMove m = entry.getValue();
+      boolean wideMatrix = false;
+      for (int i = 0; i < m.getCardinality() && !wideMatrix; i++) {
+        wideMatrix = m.getMatrixElement(i) < 0 || m.getMatrixElement(i) > SHORT_LIMIT;
+      }
+      writeString(compiled.data, entry.getKey());
+      compiled.data.writeInt(m.getCost());
+      compiled.data.writeInt(indexOf(m.getLazyImage(), iconIndex));
+      compiled.data.writeBoolean(wideMatrix);
+      compiled.data.writeInt(m.getCardinality());
+      for (int i = 0; i < m.getCardinality(); i++) {
+        writeIndex(compiled.data, m.getMatrixElement(i), wideMatrix);
+      }
+    }
+    compiled.writeTo(data);
+    data.flush();
+  }
+
+  /**
+   * Read a puzzle from a file, mapped into memory rather than read through a stream.
+   *
+   * @param file the .tpb file
+   * @return the puzzle
+   * @throws IOException if the file can't be read or isn't a valid puzzle
+   */
+  public static Puzzle read(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Read a puzzle.
+   *
+   * @param buffer the bytes of a .tpb file, from its position onwards
+   * @return the puzzle
+   * @throws IOException if the bytes aren't a valid puzzle
+   */
+  public static Puzzle read(ByteBuffer buffer) throws IOException {
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a binary puzzle file");
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported binary puzzle version " + version);
+      }
+      Map<Integer, ByteBuffer> sections = new HashMap<>();
+      int sectionCount = buffer.getInt();
+      for (int s = 0; s < sectionCount; s++) {
+        int tag = buffer.getInt();
+        int length = buffer.getInt();
+        ByteBuffer section = buffer.slice();
+        section.limit(length);
+        sections.put(tag, section);
+        buffer.position(buffer.position() + length);
+      }
+      Puzzle puzzle = new Puzzle();
+      List<LazyImage> icons = readIcons(section(sections, ICON));
+      readCells(section(sections, CELL), puzzle.getCells());
+      readMoves(section(sections, MOVE), puzzle, icons);
+      readCompiledMoves(section(sections, CMOV), puzzle, icons);
+      return puzzle;
+    } catch (BufferUnderflowException
+        | IllegalArgumentException
+        | IndexOutOfBoundsException
+        | NegativeArraySizeException e) {
+      throw new IOException("Binary puzzle file is truncated or corrupt", e);
+    }
+  }
+
+  private static ByteBuffer section(Map<Integer, ByteBuffer> sections, int tag)
+      throws IOException {
+    ByteBuffer section = sections.get(tag);
+    if (section == null) {
+      throw new IOException("Binary puzzle file has no " + tagName(tag) + " section");
+    }
+    return section;
+  }
+
+  private static List<LazyImage> readIcons(ByteBuffer in) {
+    int count = in.getInt();
+    List<LazyImage> icons = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      byte[] png = new byte[in.getInt()];
+      in.get(png);
+      // decoded when first used
+      icons.add(LazyImage.ofPng(png));
+    }
+    return icons;
+  }
+
+  private static void readCells(ByteBuffer in, List<Cell> cells) {
+    int count = in.getInt();
+    ShapeEnum[] shapes = ShapeEnum.values();
+    ColourEnum[] colours = ColourEnum.values();
+    for (int i = 0; i < count; i++) {
+      Cell cell = new Cell();
+      byte shape = in.get();
+      byte colour = in.get();
+      cell.setShape(shape < 0 ? null : shapes[shape]);
+      cell.setColour(colour < 0 ? null : colours[colour]);
+      cell.setScale(in.getInt());
+      cell.setLocationX(in.getInt());
+      cell.setLocationY(in.getInt());
+      cell.setRotation(in.getInt());
+      cells.add(cell);
+    }
+  }
+
+  private static void readMoves(ByteBuffer in, Puzzle puzzle, List<LazyImage> icons) {
+    List<Cell> cells = puzzle.getCells();
+    boolean wide = in.get() != 0;
+    int count = in.getInt();
+    for (int m = 0; m < count; m++) {
+      Move move = new Move();
+      move.setName(readString(in));
+      move.setCost(in.getInt());
+      move.setLazyImageIcon(icon(in.getInt(), icons));
+      int loopCount = in.getInt();
+      for (int l = 0; l < loopCount; l++) {
+        Loop loop = new Loop();
+        int size = in.getInt();
+        for (int i = 0; i < size; i++) {
+          loop.getCells().add(cells.get(readIndex(in, wide)));
+        }
+        move.getLoops().add(loop);
+      }
+      puzzle.getMoves().add(move);
+    }
+  }
+
+  private static void readCompiledMoves(
+      ByteBuffer in, Puzzle puzzle, List<LazyImage> icons) {
+    int count = in.getInt();
+    for (int m = 0; m < count; m++) {
+      String name = readString(in);
+      int cost = in.getInt();
+      LazyImage image = icon(in.getInt(), icons);
+      boolean wide = in.get() != 0;
+      int[] matrix = new int[in.getInt()];
+      for (int i = 0; i < matrix.length; i++) {
+        matrix[i] = readIndex(in, wide);
+      }
+      CompiledMove move = new CompiledMove(matrix);
+      move.setCost(cost);
+      move.setLazyImage(image);
+      puzzle.getCompiledMoves().put(name, move);
+    }
+  }
+
+  private static void addIcon(
+      LazyImage image, Map<LazyImage, Integer> iconIndex, List<LazyImage> icons) {
+    if (image != null && !iconIndex.containsKey(image)) {
+      iconIndex.put(image, icons.size());
+      icons.add(image);
+    }
+  }
+
+  private static int indexOf(LazyImage image, Map<LazyImage, Integer> iconIndex) {
+    return image == null ? -1 : iconIndex.get(image);
+  }
+
+  private static LazyImage icon(int index, List<LazyImage> icons) {
+    return index < 0 ? null : icons.get(index);
+  }
+
+  private static void writeIndex(DataOutputStream out, int index, boolean wide)
+      throws IOException {
+    if (wide) {
+      out.writeInt(index);
+    } else {
+      out.writeShort(index);
+    }
+  }
+
+  private static int readIndex(ByteBuffer in, boolean wide) {
+    return wide ? in.getInt() : in.getShort() & 0xFFFF;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static String readString(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static String tagName(int tag) {
+    return new String(ByteBuffer.allocate(4).putInt(tag).array(), StandardCharsets.US_ASCII);
+  }
+
+  /** A section being written, buffered so its length can go before it. */
+  private static class Section {
+    private final int tag;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream data = new DataOutputStream(bytes);
+
+    Section(int tag) {
+      this.tag = tag;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+      data.flush();
+      out.writeInt(tag);
+      out.writeInt(bytes.size());
+      bytes.writeTo(out);
+    }
+  }
+}
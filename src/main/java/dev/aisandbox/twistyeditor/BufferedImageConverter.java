@@ -5,6 +5,7 @@ import com.thoughtworks.xstream.converters.MarshallingContext;
 import com.thoughtworks.xstream.converters.UnmarshallingContext;
 import com.thoughtworks.xstream.io.HierarchicalStreamReader;
 import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import dev.aisandbox.twistyeditor.model.LazyImage;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -18,13 +19,18 @@ public class BufferedImageConverter implements Converter {
 
   @Override
   public boolean canConvert(Class type) {
-    return type.isAssignableFrom(BufferedImage.class);
+    return type.isAssignableFrom(BufferedImage.class) || type == LazyImage.class;
   }
 
   @Override
   public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
-    BufferedImage image = (BufferedImage) source;
     try {
+      if (source instanceof LazyImage) {
+        // the PNG as it was loaded, if it hasn't been replaced
+        writer.setValue(Base64.encodeBase64String(((LazyImage) source).getPng()));
+        return;
+      }
+      BufferedImage image = (BufferedImage) source;
       ByteArrayOutputStream buffer = new ByteArrayOutputStream();
       ImageIO.write(image, "png", buffer);
       buffer.close();
@@ -36,9 +42,23 @@ public class BufferedImageConverter implements Converter {
 
   @Override
   public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+    if (context.getRequiredType() == LazyImage.class) {
+      // keep the PNG, it is decoded when first used
+      return LazyImage.ofPng(Base64.decodeBase64(reader.getValue()));
+    }
+    return decode(reader.getValue());
+  }
+
+  /**
+   * Decode an image as written by this converter.
+   *
+   * @param value the base64 PNG
+   * @return the image, or null if it can't be decoded
+   */
+  private static BufferedImage decode(String value) {
     BufferedImage image = null;
     try {
-      byte[] buffer = Base64.decodeBase64(reader.getValue());
+      byte[] buffer = Base64.decodeBase64(value);
       ByteArrayInputStream in = new ByteArrayInputStream(buffer);
       image = ImageIO.read(in);
     } catch (IOException e) {
@@ -0,0 +1,184 @@
+package dev.aisandbox.twistyeditor;
+
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.LazyImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a compiled move's matrix as the cycles of the cells it moves, such as {@code
+ * <cycles>(18 20 26 24)(19 23 25 21)</cycles>}, leaving out the cells it doesn't move. In each
+ * cycle every cell takes its value from the next, and the last from the first, so the cycle above
+ * is matrix[18] = 20, matrix[20] = 26, matrix[26] = 24 and matrix[24] = 18.
+ *
+ * <p>Matrices that aren't permutations can't be written as cycles, so these are written out in
+ * full as before, and older files with a full matrix are still read.
+ */
+public class CompiledMoveConverter implements Converter {
+
+  @Override
+  public boolean canConvert(Class type) {
+    return type == CompiledMove.class;
+  }
+
+  @Override
+  public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+    CompiledMove move = (CompiledMove) source;
+    writeValue(writer, "cardinality", Integer.toString(move.getCardinality()));
+    String cycles = cycles(move);
+    if (cycles != null) {
+      writeValue(writer, "cycles", cycles);
+    } else {
+      writer.startNode("matrix");
+      for (int i = 0; i < move.getCardinality(); i++) {
+        writeValue(writer, "int", Integer.toString(move.getMatrixElement(i)));
+      }
+      writer.endNode();
+    }
+    if (move.getLazyImage() != null) {
+      writer.startNode("image");
+      context.convertAnother(move.getLazyImage());
+      writer.endNode();
+    }
+    writeValue(writer, "cost", Integer.toString(move.getCost()));
+  }
+
+  private static void writeValue(HierarchicalStreamWriter writer, String name, String value) {
+    writer.startNode(name);
+    writer.setValue(value);
+    writer.endNode();
+  }
+
+  /** @return the cycles of the move, or null if it isn't a permutation */
+  private static String cycles(CompiledMove move) {
+    int n = move.getCardinality();
+    boolean[] taken = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      int from = move.getMatrixElement(i);
+      if (from < 0 || from >= n || taken[from]) {
+        return null;
+      }
+      taken[from] = true;
+    }
+    StringBuilder result = new StringBuilder();
+    boolean[] written = new boolean[n];
+    for (int start = 0; start < n; start++) {
+      if (written[start] || move.getMatrixElement(start) == start) {
+        continue;
+      }
+      result.append('(');
+      for (int cell = start; !written[cell]; cell = move.getMatrixElement(cell)) {
+        if (cell != start) {
+          result.append(' ');
+        }
+        result.append(cell);
+        written[cell] = true;
+      }
+      result.append(')');
+    }
+    return result.toString();
+  }
+
+  @Override
+  public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+    int cardinality = -1;
+    int[] matrix = null;
+    LazyImage image = null;
+    int cost = 1;
+    try {
+      while (reader.hasMoreChildren()) {
+        reader.moveDown();
+        switch (reader.getNodeName()) {
+          case "cardinality":
+            cardinality = Integer.parseInt(reader.getValue().trim());
+            break;
+          case "cycles":
+            matrix = fromCycles(cardinality, reader.getValue());
+            break;
+          case "matrix":
+            matrix = fromList(reader);
+            break;
+          case "image":
+            image = (LazyImage) context.convertAnother(null, LazyImage.class);
+            break;
+          case "cost":
+            cost = Integer.parseInt(reader.getValue().trim());
+            break;
+          default:
+            // ignore anything unknown, as XStream would for a field that has been removed
+            break;
+        }
+        reader.moveUp();
+      }
+    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+      throw new ConversionException("Bad cell in compiled move", e);
+    }
+    if (matrix == null) {
+      throw new ConversionException("Compiled move has no matrix");
+    }
+    if (cardinality >= 0 && matrix.length != cardinality) {
+      throw new ConversionException(
+          "Compiled move has " + matrix.length + " cells, not " + cardinality);
+    }
+    CompiledMove move = new CompiledMove(matrix);
+    move.setLazyImage(image);
+    move.setCost(cost);
+    return move;
+  }
+
+  /**
+   * Build a matrix from cycles as written by this converter.
+   *
+   * @param cardinality the number of cells
+   * @param value the cycles
+   * @return the matrix
+   */
+  static int[] fromCycles(int cardinality, String value) {
+    if (cardinality < 0) {
+      throw new ConversionException("Compiled move cycles must come after its cardinality");
+    }
+    int[] matrix = new int[cardinality];
+    for (int i = 0; i < cardinality; i++) {
+      matrix[i] = i;
+    }
+    for (String cycle : value.split("\\)")) {
+      String cells = cycle.trim();
+      if (cells.isEmpty()) {
+        continue;
+      }
+      if (cells.charAt(0) != '(') {
+        throw new ConversionException("Bad compiled move cycle '" + cells + "'");
+      }
+      String[] parts = cells.substring(1).trim().split("\\s+");
+      int first = Integer.parseInt(parts[0]);
+      int previous = first;
+      for (int i = 1; i < parts.length; i++) {
+        int cell = Integer.parseInt(parts[i]);
+        matrix[previous] = cell;
+        previous = cell;
+      }
+      matrix[previous] = first;
+    }
+    return matrix;
+  }
+
+  private static int[] fromList(HierarchicalStreamReader reader) {
+    List<Integer> values = new ArrayList<>();
+    while (reader.hasMoreChildren()) {
+      reader.moveDown();
+      values.add(Integer.parseInt(reader.getValue().trim()));
+      reader.moveUp();
+    }
+    int[] matrix = new int[values.size()];
+    for (int i = 0; i < matrix.length; i++) {
+      matrix[i] = values.get(i);
+    }
+    return matrix;
+  }
+}
@@ -0,0 +1,87 @@
+package dev.aisandbox.twistyeditor;
+
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import dev.aisandbox.twistyeditor.model.Cell;
+import dev.aisandbox.twistyeditor.model.Loop;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a loop as the indices of its cells in the puzzle's cell list, such as {@code
+ * <Loop>18 20 26 24</Loop>}, rather than an XPath reference per cell. The indices are turned back
+ * into cells by {@link PuzzleConverter} once the whole puzzle has been read.
+ *
+ * <p>Loops in older files, written as a list of cell references, are still read.
+ */
+public class LoopConverter implements Converter {
+
+  @Override
+  public boolean canConvert(Class type) {
+    return type == Loop.class;
+  }
+
+  @Override
+  public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+    Loop loop = (Loop) source;
+    @SuppressWarnings("unchecked")
+    Map<Cell, Integer> cellIndex = (Map<Cell, Integer>) context.get(PuzzleConverter.CELL_INDEX);
+    if (cellIndex != null && cellIndex.keySet().containsAll(loop.getCells())) {
+      StringBuilder indices = new StringBuilder();
+      for (Cell cell : loop.getCells()) {
+        if (indices.length() > 0) {
+          indices.append(' ');
+        }
+        indices.append(cellIndex.get(cell));
+      }
+      writer.setValue(indices.toString());
+    } else {
+      // not part of a puzzle, or has cells the puzzle doesn't, so write the cells themselves
+      writer.startNode("cells");
+      for (Cell cell : loop.getCells()) {
+        writer.startNode("cell");
+        context.convertAnother(cell);
+        writer.endNode();
+      }
+      writer.endNode();
+    }
+  }
+
+  @Override
+  public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+    Loop loop = new Loop();
+    if (reader.hasMoreChildren()) {
+      // the old format, a list of cells or references to them
+      reader.moveDown();
+      while (reader.hasMoreChildren()) {
+        reader.moveDown();
+        loop.getCells().add((Cell) context.convertAnother(loop, Cell.class));
+        reader.moveUp();
+      }
+      reader.moveUp();
+    } else {
+      @SuppressWarnings("unchecked")
+      List<PuzzleConverter.PendingLoop> pending =
+          (List<PuzzleConverter.PendingLoop>) context.get(PuzzleConverter.PENDING_LOOPS);
+      if (pending == null) {
+        throw new ConversionException("A loop of cell indices can only be read in a puzzle");
+      }
+      String value = reader.getValue().trim();
+      String[] parts = value.isEmpty() ? new String[0] : value.split("\\s+");
+      int[] indices = new int[parts.length];
+      try {
+        for (int i = 0; i < parts.length; i++) {
+          indices[i] = Integer.parseInt(parts[i]);
+        }
+      } catch (NumberFormatException e) {
+        throw new ConversionException("Bad cell index in loop", e);
+      }
+      pending.add(new PuzzleConverter.PendingLoop(loop, indices));
+    }
+    return loop;
+  }
+}
@@ -0,0 +1,69 @@
+package dev.aisandbox.twistyeditor;
+
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.mapper.Mapper;
+import dev.aisandbox.twistyeditor.model.Cell;
+import dev.aisandbox.twistyeditor.model.Loop;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+
+/**
+ * Reads and writes a puzzle field by field as usual, sharing the index of each cell with {@link
+ * LoopConverter} while writing, and attaching the cells to the loops it read in a single pass once
+ * the puzzle has been read.
+ */
+public class PuzzleConverter extends ReflectionConverter {
+
+  static final String CELL_INDEX = PuzzleConverter.class.getName() + ".cellIndex";
+  static final String PENDING_LOOPS = PuzzleConverter.class.getName() + ".pendingLoops";
+
+  public PuzzleConverter(Mapper mapper, ReflectionProvider reflectionProvider) {
+    super(mapper, reflectionProvider, Puzzle.class);
+  }
+
+  @Override
+  public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+    List<Cell> cells = ((Puzzle) source).getCells();
+    Map<Cell, Integer> cellIndex = new IdentityHashMap<>(cells.size());
+    for (int i = 0; i < cells.size(); i++) {
+      cellIndex.put(cells.get(i), i);
+    }
+    context.put(CELL_INDEX, cellIndex);
+    super.marshal(source, writer, context);
+  }
+
+  @Override
+  public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+    List<PendingLoop> pending = new ArrayList<>();
+    context.put(PENDING_LOOPS, pending);
+    Puzzle puzzle = (Puzzle) super.unmarshal(reader, context);
+    List<Cell> cells = puzzle.getCells();
+    for (PendingLoop loop : pending) {
+      for (int index : loop.indices) {
+        if (index < 0 || index >= cells.size()) {
+          throw new ConversionException(
+              "Loop cell " + index + " is outside the " + cells.size() + " cells");
+        }
+        loop.loop.getCells().add(cells.get(index));
+      }
+    }
+    return puzzle;
+  }
+
+  /** A loop that has been read, waiting for its cells. */
+  @AllArgsConstructor
+  static class PendingLoop {
+    private final Loop loop;
+    private final int[] indices;
+  }
+}
@@ -4,6 +4,7 @@ import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.security.NoTypePermission;
 import dev.aisandbox.twistyeditor.model.Cell;
 import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.LazyImage;
 import dev.aisandbox.twistyeditor.model.Loop;
 import dev.aisandbox.twistyeditor.model.Move;
 import dev.aisandbox.twistyeditor.model.Puzzle;
@@ -13,6 +14,14 @@ import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -21,10 +30,17 @@ import javafx.embed.swing.SwingFXUtils;
 
 public class PuzzleUtil {
 
+  /** The extension of the binary puzzle format, see {@link BinaryPuzzleCodec}. */
+  public static final String BINARY_EXTENSION = ".tpb";
+
   public static XStream getCodec() {
     XStream xstream = new XStream();
     xstream.processAnnotations(Puzzle.class);
     xstream.registerConverter(new BufferedImageConverter());
+    xstream.registerConverter(new LoopConverter());
+    xstream.registerConverter(new CompiledMoveConverter());
+    xstream.registerConverter(
+        new PuzzleConverter(xstream.getMapper(), xstream.getReflectionProvider()));
     xstream.addPermission(NoTypePermission.NONE);
     xstream.allowTypes(
         new Class[] {
@@ -33,6 +49,7 @@ public class PuzzleUtil {
           Move.class,
           Loop.class,
           CompiledMove.class,
+          LazyImage.class,
           HashMap.class,
           Map.class,
           List.class,
@@ -43,6 +60,48 @@ public class PuzzleUtil {
     return xstream;
   }
 
+  /**
+   * @param file a puzzle file
+   * @return true if the file name says it is in the binary format
+   */
+  public static boolean isBinary(File file) {
+    return file.getName().toLowerCase().endsWith(BINARY_EXTENSION);
+  }
+
+  /**
+   * Load a puzzle, as binary if the file ends in .tpb and as XML otherwise.
+   *
+   * @param file the file
+   * @return the puzzle
+   * @throws IOException if the file can't be read
+   */
+  public static Puzzle loadPuzzle(File file) throws IOException {
+    if (isBinary(file)) {
+      return BinaryPuzzleCodec.read(file.toPath());
+    } else {
+      return (Puzzle) getCodec().fromXML(file);
+    }
+  }
+
+  /**
+   * Save a puzzle, as binary if the file ends in .tpb and as XML otherwise.
+   *
+   * @param puzzle the puzzle
+   * @param file the file
+   * @throws IOException if the file can't be written
+   */
+  public static void savePuzzle(Puzzle puzzle, File file) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+      if (isBinary(file)) {
+        BinaryPuzzleCodec.write(puzzle, out);
+      } else {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        getCodec().toXML(puzzle, writer);
+        writer.flush();
+      }
+    }
+  }
+
   public static BufferedImage getMoveIcon(String name) {
     // create a new icon
     BufferedImage image =
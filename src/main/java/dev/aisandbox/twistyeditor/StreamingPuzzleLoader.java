@@ -0,0 +1,481 @@
+package dev.aisandbox.twistyeditor;
+
+import com.thoughtworks.xstream.converters.ConversionException;
+import dev.aisandbox.twistyeditor.model.Cell;
+import dev.aisandbox.twistyeditor.model.ColourEnum;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.LazyImage;
+import dev.aisandbox.twistyeditor.model.Loop;
+import dev.aisandbox.twistyeditor.model.Move;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import dev.aisandbox.twistyeditor.model.shapes.ShapeEnum;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Loads .tp files with a pull parser, handing each part of the puzzle to a {@link Listener} as
+ * soon as it has been read, so the cells can be drawn before the moves and their icons arrive.
+ * Only one icon's text is held at a time, rather than the whole document, and icons are kept as
+ * PNGs until they are first drawn.
+ *
+ * <p>This reads what {@link PuzzleUtil#getCodec()} writes, including older files with a
+ * reference per loop cell and a full matrix per compiled move. XStream references are only
+ * followed to cells, loops and images, which are the only things a puzzle shares.
+ */
+public class StreamingPuzzleLoader {
+
+  /** Receives the parts of a puzzle as they are read, on the thread doing the loading. */
+  public interface Listener {
+
+    /**
+     * Called once, after all the cells have been added to the puzzle and before any moves.
+     *
+     * @param puzzle the puzzle, its cells won't change after this
+     */
+    void cellsLoaded(Puzzle puzzle);
+
+    /**
+     * Attach a move that has been read.
+     *
+     * @param puzzle the puzzle
+     * @param move the move, with its loops
+     */
+    void moveLoaded(Puzzle puzzle, Move move);
+
+    /**
+     * Attach a compiled move that has been read.
+     *
+     * @param puzzle the puzzle
+     * @param name the name of the compiled move
+     * @param move the compiled move
+     */
+    void compiledMoveLoaded(Puzzle puzzle, String name, CompiledMove move);
+  }
+
+  /** A listener that adds everything to the puzzle as it arrives. */
+  public static final Listener ATTACH =
+      new Listener() {
+        @Override
+        public void cellsLoaded(Puzzle puzzle) {}
+
+        @Override
+        public void moveLoaded(Puzzle puzzle, Move move) {
+          puzzle.getMoves().add(move);
+        }
+
+        @Override
+        public void compiledMoveLoaded(Puzzle puzzle, String name, CompiledMove move) {
+          puzzle.getCompiledMoves().put(name, move);
+        }
+      };
+
+  private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+  static {
+    FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+
+  private final Listener listener;
+  private final Puzzle puzzle = new Puzzle();
+  // the objects that can be referenced, by their absolute XStream path
+  private final Map<String, Object> byPath = new HashMap<>();
+  private final Deque<Frame> path = new ArrayDeque<>();
+  private XMLStreamReader reader;
+  private boolean cellsLoaded = false;
+
+  private StreamingPuzzleLoader(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Load a puzzle, adding everything to it.
+   *
+   * @param file the .tp file
+   * @return the puzzle
+   * @throws IOException if the file can't be read or isn't a puzzle
+   */
+  public static Puzzle load(File file) throws IOException {
+    return load(file, ATTACH);
+  }
+
+  /**
+   * Load a puzzle, passing its moves to a listener.
+   *
+   * @param file the .tp file
+   * @param listener told about each part as it is read
+   * @return the puzzle, holding its cells and whatever the listener added
+   * @throws IOException if the file can't be read or isn't a puzzle
+   */
+  public static Puzzle load(File file, Listener listener) throws IOException {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+      return load(in, listener);
+    }
+  }
+
+  /**
+   * Load a puzzle, passing its moves to a listener.
+   *
+   * @param in the XML, this is not closed
+   * @param listener told about each part as it is read
+   * @return the puzzle, holding its cells and whatever the listener added
+   * @throws IOException if the stream can't be read or isn't a puzzle
+   */
+  public static Puzzle load(InputStream in, Listener listener) throws IOException {
+    StreamingPuzzleLoader loader = new StreamingPuzzleLoader(listener);
+    try {
+      loader.reader = FACTORY.createXMLStreamReader(in);
+      try {
+        return loader.readPuzzle();
+      } finally {
+        loader.reader.close();
+      }
+    } catch (XMLStreamException
+        | ConversionException
+        | IllegalArgumentException
+        | IndexOutOfBoundsException e) {
+      // bad numbers, unknown shapes or colours, and cell indices that aren't in the puzzle
+      throw new IOException("Error reading puzzle: " + e.getMessage(), e);
+    }
+  }
+
+  private Puzzle readPuzzle() throws XMLStreamException, IOException {
+    reader.nextTag();
+    enter();
+    if (!"puzzle".equals(reader.getLocalName())) {
+      throw new IOException("Not a puzzle file, it starts with <" + reader.getLocalName() + ">");
+    }
+    while (nextChild()) {
+      switch (reader.getLocalName()) {
+        case "cells":
+          while (nextChild()) {
+            puzzle.getCells().add(readCell());
+          }
+          cellsLoaded();
+          break;
+        case "moves":
+          cellsLoaded();
+          while (nextChild()) {
+            listener.moveLoaded(puzzle, readMove());
+          }
+          break;
+        case "compiledMoves":
+          cellsLoaded();
+          while (nextChild()) {
+            readCompiledMove();
+          }
+          break;
+        default:
+          skip();
+          break;
+      }
+    }
+    cellsLoaded();
+    return puzzle;
+  }
+
+  private void cellsLoaded() {
+    if (!cellsLoaded) {
+      cellsLoaded = true;
+      listener.cellsLoaded(puzzle);
+    }
+  }
+
+  private Cell readCell() throws XMLStreamException, IOException {
+    Object referenced = referenced();
+    if (referenced != null) {
+      return cast(referenced, Cell.class);
+    }
+    Cell cell = new Cell();
+    byPath.put(path.peek().path, cell);
+    while (nextChild()) {
+      switch (reader.getLocalName()) {
+        case "shape":
+          cell.setShape(ShapeEnum.valueOf(text()));
+          break;
+        case "scale":
+          cell.setScale(Integer.parseInt(text()));
+          break;
+        case "locationX":
+          cell.setLocationX(Integer.parseInt(text()));
+          break;
+        case "locationY":
+          cell.setLocationY(Integer.parseInt(text()));
+          break;
+        case "rotation":
+          cell.setRotation(Integer.parseInt(text()));
+          break;
+        case "colour":
+          cell.setColour(ColourEnum.valueOf(text()));
+          break;
+        default:
+          skip();
+          break;
+      }
+    }
+    return cell;
+  }
+
+  private Move readMove() throws XMLStreamException, IOException {
+    Move move = new Move();
+    while (nextChild()) {
+      switch (reader.getLocalName()) {
+        case "imageIcon":
+          move.setLazyImageIcon(readImage());
+          break;
+        case "name":
+          move.setName(text());
+          break;
+        case "loops":
+          while (nextChild()) {
+            move.getLoops().add(readLoop());
+          }
+          break;
+        case "cost":
+          move.setCost(Integer.parseInt(text()));
+          break;
+        default:
+          skip();
+          break;
+      }
+    }
+    return move;
+  }
+
+  private Loop readLoop() throws XMLStreamException, IOException {
+    Object referenced = referenced();
+    if (referenced != null) {
+      return cast(referenced, Loop.class);
+    }
+    Loop loop = new Loop();
+    byPath.put(path.peek().path, loop);
+    StringBuilder indices = new StringBuilder();
+    // either cell indices as text, or a list of cells in older files
+    while (true) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+        indices.append(reader.getText());
+      } else if (event == XMLStreamConstants.START_ELEMENT) {
+        enter();
+        while (nextChild()) {
+          loop.getCells().add(readCell());
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        path.pop();
+        break;
+      }
+    }
+    String value = indices.toString().trim();
+    if (!value.isEmpty()) {
+      for (String index : value.split("\\s+")) {
+        int i = Integer.parseInt(index);
+        if (i < 0 || i >= puzzle.getCells().size()) {
+          throw new IOException(
+              "Loop cell " + i + " is outside the " + puzzle.getCells().size() + " cells");
+        }
+        loop.getCells().add(puzzle.getCells().get(i));
+      }
+    }
+    return loop;
+  }
+
+  private void readCompiledMove() throws XMLStreamException, IOException {
+    String name = null;
+    CompiledMove move = null;
+    while (nextChild()) {
+      if ("cmove".equals(reader.getLocalName())) {
+        move = readCompiledMoveBody();
+      } else if ("string".equals(reader.getLocalName())) {
+        name = text();
+      } else {
+        skip();
+      }
+    }
+    if (move == null) {
+      throw new IOException("Compiled move '" + name + "' has no body");
+    }
+    listener.compiledMoveLoaded(puzzle, name, move);
+  }
+
+  private CompiledMove readCompiledMoveBody() throws XMLStreamException, IOException {
+    int cardinality = -1;
+    int[] matrix = null;
+    LazyImage image = null;
+    int cost = 1;
+    while (nextChild()) {
+      switch (reader.getLocalName()) {
+        case "cardinality":
+          cardinality = Integer.parseInt(text());
+          break;
+        case "cycles":
+          matrix = CompiledMoveConverter.fromCycles(cardinality, text());
+          break;
+        case "matrix":
+          List<Integer> values = new ArrayList<>();
+          while (nextChild()) {
+            values.add(Integer.parseInt(text()));
+          }
+          matrix = values.stream().mapToInt(Integer::intValue).toArray();
+          break;
+        case "image":
+          image = readImage();
+          break;
+        case "cost":
+          cost = Integer.parseInt(text());
+          break;
+        default:
+          skip();
+          break;
+      }
+    }
+    if (matrix == null) {
+      throw new IOException("Compiled move has no matrix");
+    }
+    if (cardinality >= 0 && matrix.length != cardinality) {
+      throw new IOException("Compiled move has " + matrix.length + " cells, not " + cardinality);
+    }
+    CompiledMove move = new CompiledMove(matrix);
+    move.setLazyImage(image);
+    move.setCost(cost);
+    return move;
+  }
+
+  private LazyImage readImage() throws XMLStreamException, IOException {
+    Object referenced = referenced();
+    if (referenced != null) {
+      return cast(referenced, LazyImage.class);
+    }
+    String current = path.peek().path;
+    // keep the PNG, it is decoded when first used
+    LazyImage image = LazyImage.ofPng(Base64.decodeBase64(text()));
+    byPath.put(current, image);
+    return image;
+  }
+
+  /**
+   * Follow the reference on the current element, if it has one.
+   *
+   * @return the object it refers to, or null if the element isn't a reference
+   */
+  private Object referenced() throws XMLStreamException, IOException {
+    String reference = reader.getAttributeValue(null, "reference");
+    if (reference == null) {
+      return null;
+    }
+    String target = resolve(path.peek().path, reference);
+    Object object = byPath.get(target);
+    if (object == null) {
+      throw new IOException("Can't follow the reference to " + reference);
+    }
+    skip();
+    return object;
+  }
+
+  private static <T> T cast(Object object, Class<T> type) throws IOException {
+    if (!type.isInstance(object)) {
+      throw new IOException("Expected a reference to a " + type.getSimpleName());
+    }
+    return type.cast(object);
+  }
+
+  /** Turn a path relative to an element into an absolute one. */
+  static String resolve(String from, String reference) {
+    Deque<String> segments = new ArrayDeque<>();
+    if (!reference.startsWith("/")) {
+      for (String segment : from.split("/")) {
+        if (!segment.isEmpty()) {
+          segments.addLast(segment);
+        }
+      }
+    }
+    for (String segment : reference.split("/")) {
+      if (segment.isEmpty() || ".".equals(segment)) {
+        continue;
+      } else if ("..".equals(segment)) {
+        segments.pollLast();
+      } else if (segment.endsWith("[1]")) {
+        // the first of a name has no index in the paths XStream writes
+        segments.addLast(segment.substring(0, segment.length() - 3));
+      } else {
+        segments.addLast(segment);
+      }
+    }
+    return "/" + String.join("/", segments);
+  }
+
+  /** Record that the reader has moved onto a start element. */
+  private void enter() {
+    String name = reader.getLocalName();
+    Frame parent = path.peek();
+    String segment = name;
+    String parentPath = "";
+    if (parent != null) {
+      int count = parent.childCounts.merge(name, 1, Integer::sum);
+      if (count > 1) {
+        segment = name + "[" + count + "]";
+      }
+      parentPath = parent.path;
+    }
+    path.push(new Frame(parentPath + "/" + segment));
+  }
+
+  /**
+   * Move to the next child of the current element.
+   *
+   * @return true if on a child, false if the current element has ended
+   */
+  private boolean nextChild() throws XMLStreamException {
+    int event = reader.nextTag();
+    if (event == XMLStreamConstants.START_ELEMENT) {
+      enter();
+      return true;
+    }
+    path.pop();
+    return false;
+  }
+
+  /** Read the text of the current element, which ends it. */
+  private String text() throws XMLStreamException {
+    String text = reader.getElementText().trim();
+    path.pop();
+    return text;
+  }
+
+  /** Skip the rest of the current element. */
+  private void skip() throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+    path.pop();
+  }
+
+  /** An element being read, with a count of its children by name for building paths. */
+  private static class Frame {
+    final String path;
+    final Map<String, Integer> childCounts = new HashMap<>();
+
+    Frame(String path) {
+      this.path = path;
+    }
+  }
+}
@@ -1,8 +1,8 @@
 package dev.aisandbox.twistyeditor;
 
-import com.thoughtworks.xstream.XStream;
 import dev.aisandbox.twistyeditor.model.Cell;
 import dev.aisandbox.twistyeditor.model.ColourEnum;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
 import dev.aisandbox.twistyeditor.model.CuboidBuilder;
 import dev.aisandbox.twistyeditor.model.Loop;
 import dev.aisandbox.twistyeditor.model.Move;
@@ -15,15 +15,15 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.ParsePosition;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.embed.swing.SwingFXUtils;
@@ -37,9 +37,11 @@ import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.Spinner;
 import javafx.scene.control.SpinnerValueFactory;
+import javafx.scene.control.TabPane;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TextFormatter;
 import javafx.scene.image.ImageView;
@@ -71,6 +73,10 @@ public class UIController {
 
   @Autowired BuildProperties buildProperties;
 
+  @FXML private MenuBar menuBar;
+
+  @FXML private TabPane editorTabs;
+
   @FXML private ListView<Cell> cellList;
 
   @FXML private Label puzzleName;
@@ -140,15 +146,15 @@ public class UIController {
     FileChooser.ExtensionFilter extFilter =
         new FileChooser.ExtensionFilter("Twisty puzzzles (*.tp)", "*.tp");
     fileChooser.getExtensionFilters().add(extFilter);
+    fileChooser
+        .getExtensionFilters()
+        .add(new FileChooser.ExtensionFilter("Binary twisty puzzles (*.tpb)", "*.tpb"));
     // Show save file dialog
     File file = fileChooser.showSaveDialog(window);
     if (file != null) {
       try {
         log.info("Saving to {}", file.getAbsolutePath());
-        XStream xstream = PuzzleUtil.getCodec();
-        BufferedWriter out = new BufferedWriter(new FileWriter(file));
-        out.write(xstream.toXML(puzzle));
-        out.close();
+        PuzzleUtil.savePuzzle(puzzle, file);
       } catch (IOException e) {
         log.error("Error saving puzzle", e);
       }
@@ -216,30 +222,109 @@ public class UIController {
     FileChooser fileChooser = new FileChooser();
     // Set extension filter for text files
     FileChooser.ExtensionFilter extFilter =
-        new FileChooser.ExtensionFilter("Twisty puzzzles (*.tp)", "*.tp");
+        new FileChooser.ExtensionFilter("Twisty puzzzles (*.tp, *.tpb)", "*.tp", "*.tpb");
     fileChooser.getExtensionFilters().add(extFilter);
     // Show save file dialog
     File file = fileChooser.showOpenDialog(window);
     if (file != null) {
-      try {
-        log.info("Loading puzzle from {}", file.getAbsolutePath());
-        XStream xstream = PuzzleUtil.getCodec();
-        puzzle = (Puzzle) xstream.fromXML(file);
-        log.info("Puzzle loaded");
-        log.info("Loaded puzzle with {} cells", puzzle.getCells().size());
-        // re-point cell listing
-        cellObservableList = FXCollections.observableList(puzzle.getCells());
-        cellList.setItems(cellObservableList);
-        // re-point move listing
-        moveObservableList = FXCollections.observableList(puzzle.getMoves());
-        moveList.setItems(moveObservableList);
-      } catch (Exception e) {
-        log.error("Error loading puzzle", e);
+      log.info("Loading puzzle from {}", file.getAbsolutePath());
+      if (PuzzleUtil.isBinary(file)) {
+        try {
+          showPuzzle(PuzzleUtil.loadPuzzle(file));
+          log.info("Puzzle loaded");
+        } catch (Exception e) {
+          log.error("Error loading puzzle", e);
+        }
+      } else {
+        // read the XML in the background, so the cells can be shown before the moves arrive,
+        // with saving and editing turned off until the last of them has been added
+        setLoading(true);
+        Thread loader = new Thread(() -> streamPuzzle(file), "puzzle-loader");
+        loader.setDaemon(true);
+        loader.start();
       }
     }
     updateUI();
   }
 
+  /** Load a puzzle on the current thread, passing each part to the JavaFX thread as it's read. */
+  private void streamPuzzle(File file) {
+    // the puzzle being read, once its cells have been shown
+    AtomicReference<Puzzle> shown = new AtomicReference<>();
+    try {
+      Puzzle loaded =
+          StreamingPuzzleLoader.load(
+              file,
+              new StreamingPuzzleLoader.Listener() {
+                @Override
+                public void cellsLoaded(Puzzle p) {
+                  shown.set(p);
+                  Platform.runLater(() -> showPuzzle(p));
+                }
+
+                @Override
+                public void moveLoaded(Puzzle p, Move move) {
+                  Platform.runLater(
+                      () -> {
+                        // skip it if another puzzle has been loaded since
+                        if (puzzle == p) {
+                          moveObservableList.add(move);
+                        }
+                      });
+                }
+
+                @Override
+                public void compiledMoveLoaded(Puzzle p, String name, CompiledMove move) {
+                  Platform.runLater(
+                      () -> {
+                        if (puzzle == p) {
+                          p.getCompiledMoves().put(name, move);
+                        }
+                      });
+                }
+              });
+      Platform.runLater(
+          () -> {
+            log.info("Puzzle loaded with {} moves", loaded.getMoves().size());
+            setLoading(false);
+            updateUI();
+          });
+    } catch (IOException | RuntimeException e) {
+      log.error("Error loading puzzle", e);
+      Platform.runLater(
+          () -> {
+            // don't leave half a puzzle to be edited and saved
+            if (shown.get() != null && puzzle == shown.get()) {
+              showPuzzle(new Puzzle());
+            }
+            setLoading(false);
+            Alert alert = new Alert(AlertType.ERROR);
+            alert.setTitle("Puzzle Error");
+            alert.setHeaderText("Error loading " + file.getName());
+            alert.setContentText(e.getMessage());
+            alert.showAndWait();
+          });
+    }
+  }
+
+  /** Turn the menus and editors off while a puzzle is loading, and back on again. */
+  private void setLoading(boolean loading) {
+    menuBar.setDisable(loading);
+    editorTabs.setDisable(loading);
+  }
+
+  private void showPuzzle(Puzzle loaded) {
+    puzzle = loaded;
+    log.info("Loaded puzzle with {} cells", puzzle.getCells().size());
+    // re-point cell listing
+    cellObservableList = FXCollections.observableList(puzzle.getCells());
+    cellList.setItems(cellObservableList);
+    // re-point move listing
+    moveObservableList = FXCollections.observableList(puzzle.getMoves());
+    moveList.setItems(moveObservableList);
+    updateUI();
+  }
+
   @FXML
   void addMove(ActionEvent event) {
     log.info("Adding move");
@@ -256,6 +341,7 @@ public class UIController {
     if (selectedMove != null) {
       Loop loop = new Loop();
       selectedMove.getLoops().add(loop);
+      selectedMove.markDirty();
       // add to the list of loops
       loopList.getItems().add(loop);
       // select this loop
@@ -275,6 +361,7 @@ public class UIController {
       Cell cell = puzzle.findCell(x, y);
       if ((cell != null) && (!selectedLoop.getCells().contains(cell))) {
         selectedLoop.getCells().add(cell);
+        selectedLoop.markDirty();
         updateUI();
       }
     }
@@ -286,6 +373,7 @@ public class UIController {
       Loop loop = selectedLoop; // cache
       loopList.getItems().removeAll(loop);
       selectedMove.getLoops().remove(loop);
+      selectedMove.markDirty();
       updateUI();
     }
   }
@@ -295,6 +383,7 @@ public class UIController {
     if (selectedLoop != null) {
       log.info("Reversing loop {}", selectedLoop);
       Collections.reverse(selectedLoop.getCells());
+      selectedLoop.markDirty();
       updateUI();
     }
   }
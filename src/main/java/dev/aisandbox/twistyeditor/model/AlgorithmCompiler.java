@@ -0,0 +1,110 @@
+package dev.aisandbox.twistyeditor.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+
+/**
+ * Turns a sequence of move names such as "R U R' U'" into a single {@link CompiledMove}, so
+ * replaying it costs one permutation instead of one per move. Recently used sequences are kept in
+ * an LRU cache, which is emptied whenever the puzzle's moves are recompiled.
+ *
+ * <p>Names are matched against {@link Puzzle#getCompiledMoves()}, so the cuboid names from {@link
+ * CuboidBuilder#getMoveName(int, char, int)} work as they are. If a name isn't found, a trailing
+ * <code>'</code> or <code>2</code> is treated as the inverse or double of the remaining name.
+ */
+public class AlgorithmCompiler {
+
+  public static final int DEFAULT_CACHE_SIZE = 1024;
+
+  private final Puzzle puzzle;
+  @Getter private final int cacheSize;
+  private final LinkedHashMap<String, CompiledMove> cache;
+  // the compiled moves the cache was built from
+  private Map<String, CompiledMove> cachedMoves = null;
+
+  public AlgorithmCompiler(Puzzle puzzle) {
+    this(puzzle, DEFAULT_CACHE_SIZE);
+  }
+
+  public AlgorithmCompiler(Puzzle puzzle, int cacheSize) {
+    this.puzzle = puzzle;
+    this.cacheSize = cacheSize;
+    this.cache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CompiledMove> eldest) {
+            return size() > AlgorithmCompiler.this.cacheSize;
+          }
+        };
+  }
+
+  /**
+   * Compile a sequence of moves.
+   *
+   * @param sequence move names separated by whitespace
+   * @return a move with the same effect (and total cost) as the whole sequence, this may be shared
+   *     with other callers so it shouldn't be changed. The in-place {@link
+   *     CompiledMove#applyMove(byte[])} uses a buffer in the move, so threads sharing a compiler
+   *     should use {@link CompiledMove#applyMove(byte[], byte[])} instead
+   * @throws IllegalArgumentException if the sequence contains an unknown move
+   */
+  public synchronized CompiledMove compile(String sequence) {
+    Map<String, CompiledMove> moves = puzzle.getCompiledMoves();
+    if (moves != cachedMoves) {
+      // the puzzle has been recompiled
+      cache.clear();
+      cachedMoves = moves;
+    }
+    // key on the names separated by single spaces, so each sequence takes one entry
+    List<String> names = parse(sequence);
+    String key = String.join(" ", names);
+    CompiledMove result = cache.get(key);
+    if (result == null) {
+      result = CompiledMove.identity(puzzle.getCells().size());
+      for (String name : names) {
+        result = result.then(lookup(moves, name));
+      }
+      cache.put(key, result);
+    }
+    return result;
+  }
+
+  /** @return the number of sequences currently cached */
+  public synchronized int getCachedCount() {
+    return cache.size();
+  }
+
+  /**
+   * Split a sequence into move names.
+   *
+   * @param sequence move names separated by whitespace
+   * @return the names, in order
+   */
+  public static List<String> parse(String sequence) {
+    String trimmed = sequence.trim();
+    if (trimmed.isEmpty()) {
+      return new ArrayList<>();
+    }
+    return Arrays.asList(trimmed.split("\\s+"));
+  }
+
+  private static CompiledMove lookup(Map<String, CompiledMove> moves, String name) {
+    CompiledMove move = moves.get(name);
+    if (move == null && name.length() > 1) {
+      String base = name.substring(0, name.length() - 1);
+      if (name.endsWith("'") && moves.containsKey(base)) {
+        move = moves.get(base).inverse();
+      } else if (name.endsWith("2") && moves.containsKey(base)) {
+        move = moves.get(base).power(2);
+      }
+    }
+    if (move == null) {
+      throw new IllegalArgumentException("Unknown move '" + name + "'");
+    }
+    return move;
+  }
+}
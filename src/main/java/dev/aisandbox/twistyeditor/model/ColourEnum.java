@@ -30,4 +30,42 @@ public enum ColourEnum {
             Integer.valueOf(hex.substring(2, 4), 16),
             Integer.valueOf(hex.substring(4, 6), 16));
   }
+
+  public static ColourEnum fromCharacter(char character) {
+    for (ColourEnum colour : values()) {
+      if (colour.character == character) {
+        return colour;
+      }
+    }
+    throw new IllegalArgumentException("Unknown colour character '" + character + "'");
+  }
+
+  /**
+   * Convert a state string (one colour character per cell) into colour ordinals.
+   *
+   * @param state the state as a string of colour characters
+   * @return the state as one {@link #ordinal()} per cell
+   */
+  public static byte[] encodeState(String state) {
+    byte[] result = new byte[state.length()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = (byte) fromCharacter(state.charAt(i)).ordinal();
+    }
+    return result;
+  }
+
+  /**
+   * Convert colour ordinals back into a state string.
+   *
+   * @param state the state as one {@link #ordinal()} per cell
+   * @return the state as a string of colour characters
+   */
+  public static String decodeState(byte[] state) {
+    ColourEnum[] colours = values();
+    char[] result = new char[state.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = colours[state[i]].character;
+    }
+    return new String(result);
+  }
 }
@@ -2,45 +2,505 @@ package dev.aisandbox.twistyeditor.model;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import lombok.Getter;
 import lombok.Setter;
 
 @XStreamAlias("cmove")
 public class CompiledMove {
 
-  private final int cardinality;
+  /**
+   * Moves that touch less than this fraction of the cells are applied by rotating their cycles in
+   * place, rather than by walking the whole matrix.
+   */
+  public static final double SPARSE_THRESHOLD = 0.25;
+
+  @Getter private final int cardinality;
 
   private final int[] matrix;
 
-  @Getter @Setter private BufferedImage image;
+  // the icon, decoded when first asked for
+  private LazyImage image;
 
   @Getter @Setter private int cost=1;
 
+  // working buffer for the in-place byte[] move, not thread safe and never serialised
+  private transient byte[] scratch;
+
+  // cycle decomposition of the matrix, built when the move is compiled or on first use
+  private transient Cycles cycles;
+
   public CompiledMove(int cardinality) {
     this.cardinality = cardinality;
     matrix = new int[cardinality];
   }
 
+  /**
+   * Create a move from a matrix, where the new value of cell i is the old value of cell
+   * matrix[i].
+   *
+   * @param matrix the matrix, this is copied
+   */
+  public CompiledMove(int[] matrix) {
+    this.cardinality = matrix.length;
+    this.matrix = matrix.clone();
+  }
+
+  /**
+   * Create a move that doesn't change anything.
+   *
+   * @param cardinality the number of cells
+   * @return the identity move, with a cost of zero
+   */
+  public static CompiledMove identity(int cardinality) {
+    CompiledMove move = new CompiledMove(cardinality);
+    move.resetMove();
+    move.setCost(0);
+    return move;
+  }
+
   protected void resetMove() {
     for (int i=0;i<cardinality;i++) {
       matrix[i]=i;
     }
+    cycles = null;
   }
 
   protected void setMatrixElement(int index,int value) {
     matrix[index] = value;
+    cycles = null;
   }
 
-  protected int getMatrixElement(int index) {
+  /**
+   * Find where a cell takes its value from.
+   *
+   * @param index the cell
+   * @return the cell whose old value becomes the new value of this one
+   */
+  public int getMatrixElement(int index) {
     return matrix[index];
   }
 
+  /** @return the icon, decoding it if needed */
+  public BufferedImage getImage() {
+    return image == null ? null : image.get();
+  }
+
+  public void setImage(BufferedImage image) {
+    this.image = LazyImage.of(image);
+  }
+
+  /** @return the icon, as it was loaded */
+  public LazyImage getLazyImage() {
+    return image;
+  }
+
+  public void setLazyImage(LazyImage image) {
+    this.image = image;
+  }
+
   public String applyMove(String state) {
-    StringBuilder sb = new StringBuilder();
+    char[] result = new char[cardinality];
+    applyMove(state.toCharArray(), result);
+    return new String(result);
+  }
+
+  public void applyMove(char[] src, char[] dst) {
     for (int i=0;i<cardinality;i++) {
-      sb.append(state.charAt(matrix[i]));
+      dst[i] = src[matrix[i]];
+    }
+  }
+
+  /**
+   * Apply the move to a state holding anything that fits in an int per cell, such as the original
+   * index of the sticker now in each cell.
+   *
+   * @param src the state before the move
+   * @param dst the array to write the new state into, must not be the same array as src
+   */
+  public void applyMove(int[] src, int[] dst) {
+    for (int i = 0; i < cardinality; i++) {
+      dst[i] = src[matrix[i]];
+    }
+  }
+
+  /**
+   * Apply the move to a state encoded as {@link ColourEnum} ordinals, without allocating.
+   *
+   * @param src the state before the move
+   * @param dst the array to write the new state into, must not be the same array as src
+   */
+  public void applyMove(byte[] src, byte[] dst) {
+    if (src == dst) {
+      throw new IllegalArgumentException("Source and destination must be different arrays");
+    }
+    Cycles c = getCycles();
+    if (c.sparse) {
+      System.arraycopy(src, 0, dst, 0, cardinality);
+      int[] positions = c.positions;
+      int[] sources = c.sources;
+      for (int i = 0; i < positions.length; i++) {
+        dst[positions[i]] = src[sources[i]];
+      }
+    } else {
+      for (int i = 0; i < cardinality; i++) {
+        dst[i] = src[matrix[i]];
+      }
+    }
+  }
+
+  /**
+   * Apply the move to a state encoded as {@link ColourEnum} ordinals, in place.
+   *
+   * <p>This reuses an internal scratch buffer so it allocates nothing after the first call, but
+   * it is not safe to call from more than one thread on the same move.
+   *
+   * @param state the state to update
+   */
+  public void applyMove(byte[] state) {
+    Cycles c = getCycles();
+    if (c.sparse) {
+      rotateCycles(c, state);
+    } else {
+      if (scratch == null) {
+        scratch = new byte[cardinality];
+      }
+      System.arraycopy(state, 0, scratch, 0, cardinality);
+      for (int i = 0; i < cardinality; i++) {
+        state[i] = scratch[matrix[i]];
+      }
+    }
+  }
+
+  /**
+   * Work out how the move changes the Zobrist hash of a state, looking only at the cells it
+   * moves.
+   *
+   * @param state the state before the move
+   * @param keys the Zobrist keys
+   * @return the value to XOR into the hash of the state to get the hash after the move
+   */
+  public long hashDelta(byte[] state, ZobristHash keys) {
+    Cycles c = getCycles();
+    long delta = 0;
+    if (c.permutation) {
+      int[] positions = c.positions;
+      int[] sources = c.sources;
+      for (int i = 0; i < positions.length; i++) {
+        int p = positions[i];
+        delta ^= keys.getKey(p, state[p]) ^ keys.getKey(p, state[sources[i]]);
+      }
+    } else {
+      for (int i = 0; i < cardinality; i++) {
+        if (matrix[i] != i) {
+          delta ^= keys.getKey(i, state[i]) ^ keys.getKey(i, state[matrix[i]]);
+        }
+      }
+    }
+    return delta;
+  }
+
+  /**
+   * Apply the move to a state in place, updating its Zobrist hash as well. Sparse moves update the
+   * hash as their cycles are rotated, in time proportional to the number of cells moved. Other
+   * moves touch so much of the state that hashing it again is quicker.
+   *
+   * <p>Like {@link #applyMove(byte[])} this is not safe to call from more than one thread on the
+   * same move.
+   *
+   * @param state the state to update
+   * @param keys the Zobrist keys
+   * @param hash the hash of the state before the move
+   * @return the hash of the state after the move
+   */
+  public long applyMove(byte[] state, ZobristHash keys, long hash) {
+    Cycles c = getCycles();
+    if (!c.sparse) {
+      applyMove(state);
+      return keys.hash(state);
+    }
+    int[] positions = c.positions;
+    int[] starts = c.starts;
+    for (int i = 0; i < starts.length - 1; i++) {
+      int start = starts[i];
+      int end = starts[i + 1] - 1;
+      byte first = state[positions[start]];
+      byte old = first;
+      for (int j = start; j < end; j++) {
+        int p = positions[j];
+        byte value = state[positions[j + 1]];
+        hash ^= keys.getKey(p, old) ^ keys.getKey(p, value);
+        state[p] = value;
+        old = value;
+      }
+      int p = positions[end];
+      hash ^= keys.getKey(p, old) ^ keys.getKey(p, first);
+      state[p] = first;
+    }
+    return hash;
+  }
+
+  /**
+   * Apply the move to part of a {@link StateBatch}, where each cell is stored as a column of
+   * size bytes. As every row gets the same move, each cell is a single block copy.
+   *
+   * @param src the states before the move
+   * @param dst the array to write the new states into
+   * @param size the number of rows in the batch
+   * @param from the first row to move
+   * @param to the row after the last one to move
+   */
+  void applyMoveToColumns(byte[] src, byte[] dst, int size, int from, int to) {
+    for (int i = 0; i < cardinality; i++) {
+      System.arraycopy(src, matrix[i] * size + from, dst, i * size + from, to - from);
+    }
+  }
+
+  /** @return the matrix itself, for classes in this package that must not change it */
+  int[] getMatrix() {
+    return matrix;
+  }
+
+  private static void rotateCycles(Cycles c, byte[] state) {
+    int[] positions = c.positions;
+    int[] starts = c.starts;
+    for (int i = 0; i < starts.length - 1; i++) {
+      int start = starts[i];
+      int end = starts[i + 1] - 1;
+      byte first = state[positions[start]];
+      for (int j = start; j < end; j++) {
+        state[positions[j]] = state[positions[j + 1]];
+      }
+      state[positions[end]] = first;
+    }
+  }
+
+  /**
+   * Combine this move with another one, the result is the same as applying this move and then
+   * the next one. The cost is the sum of the two costs.
+   *
+   * @param next the move to apply after this one
+   * @return a new move
+   */
+  public CompiledMove then(CompiledMove next) {
+    checkCardinality(next);
+    int[] result = new int[cardinality];
+    for (int i = 0; i < cardinality; i++) {
+      result[i] = matrix[next.matrix[i]];
+    }
+    CompiledMove move = new CompiledMove(result);
+    move.setCost(cost + next.cost);
+    return move;
+  }
+
+  /**
+   * Create the move that undoes this one, with the same cost.
+   *
+   * @return a new move
+   */
+  public CompiledMove inverse() {
+    checkPermutation();
+    int[] result = new int[cardinality];
+    for (int i = 0; i < cardinality; i++) {
+      result[matrix[i]] = i;
+    }
+    CompiledMove move = new CompiledMove(result);
+    move.setCost(cost);
+    return move;
+  }
+
+  /**
+   * Create the move that is the same as applying this one k times. This works on each cycle
+   * directly, so it costs the same for any k. Negative values of k repeat the inverse.
+   *
+   * @param k the number of times to repeat the move
+   * @return a new move, costing |k| times this one, capped at {@link Integer#MAX_VALUE}
+   */
+  public CompiledMove power(long k) {
+    checkPermutation();
+    Cycles c = getCycles();
+    int[] result = new int[cardinality];
+    for (int i = 0; i < cardinality; i++) {
+      result[i] = i;
+    }
+    for (int i = 0; i < c.starts.length - 1; i++) {
+      int start = c.starts[i];
+      int length = c.starts[i + 1] - start;
+      int shift = (int) Math.floorMod(k, (long) length);
+      for (int j = 0; j < length; j++) {
+        result[c.positions[start + j]] = c.positions[start + (j + shift) % length];
+      }
+    }
+    CompiledMove move = new CompiledMove(result);
+    // |k| * cost in long arithmetic, capped rather than wrapping for huge k
+    long repeats = k == Long.MIN_VALUE ? Long.MAX_VALUE : Math.abs(k);
+    long total;
+    try {
+      total = Math.multiplyExact(repeats, (long) cost);
+    } catch (ArithmeticException e) {
+      total = cost < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+    move.setCost((int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, total)));
+    return move;
+  }
+
+  /**
+   * Work out the order of the move, the number of times it has to be repeated to get back to
+   * where it started. This is the lowest common multiple of the cycle lengths.
+   *
+   * @return the order of the move
+   * @throws ArithmeticException if the order is too big for a long
+   */
+  public long getOrder() {
+    checkPermutation();
+    Cycles c = getCycles();
+    long order = 1;
+    for (int i = 0; i < c.starts.length - 1; i++) {
+      long length = c.starts[i + 1] - c.starts[i];
+      long gcd = gcd(order, length);
+      order = Math.multiplyExact(order / gcd, length);
+    }
+    return order;
+  }
+
+  /** @return true if the move doesn't change any cells */
+  public boolean isIdentity() {
+    for (int i = 0; i < cardinality; i++) {
+      if (matrix[i] != i) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Check if two moves have the same effect, ignoring the cost and image.
+   *
+   * @param other the move to compare
+   * @return true if both moves move the same cells to the same places
+   */
+  public boolean isSamePermutation(CompiledMove other) {
+    return Arrays.equals(matrix, other.matrix);
+  }
+
+  private static long gcd(long a, long b) {
+    while (b != 0) {
+      long t = a % b;
+      a = b;
+      b = t;
+    }
+    return a;
+  }
+
+  private void checkCardinality(CompiledMove other) {
+    if (other.cardinality != cardinality) {
+      throw new IllegalArgumentException(
+          "Moves have different cardinality " + cardinality + " and " + other.cardinality);
+    }
+  }
+
+  private void checkPermutation() {
+    if (!getCycles().permutation) {
+      throw new IllegalStateException(
+          "Move is not a permutation, more than one cell has the same source");
+    }
+  }
+
+  /**
+   * Work out the cycles of the move. This is done by the puzzle when the move is compiled from its
+   * loops, and otherwise on first use (for example after loading a puzzle).
+   */
+  void buildCycles() {
+    cycles = new Cycles(matrix);
+  }
+
+  Cycles getCycles() {
+    Cycles c = cycles;
+    if (c == null) {
+      c = new Cycles(matrix);
+      cycles = c;
+    }
+    return c;
+  }
+
+  /** @return true if the move is applied by rotating its cycles rather than the whole matrix */
+  public boolean isSparse() {
+    return getCycles().sparse;
+  }
+
+  /** @return the number of cells that this move changes */
+  public int getMovedCount() {
+    return getCycles().moved;
+  }
+
+  /**
+   * The cycle decomposition of a move, each cycle lists positions p0, p1, ... where the new value
+   * at p(j) is the old value at p(j+1). Immutable, so it can be shared between threads.
+   */
+  static final class Cycles {
+    // positions of every cycle, back to back
+    final int[] positions;
+    // start of each cycle in positions, with a final entry for the end of the last cycle
+    final int[] starts;
+    // where each of the positions takes its value from
+    final int[] sources;
+    // false if two cells take their value from the same cell, so there are no cycles
+    final boolean permutation;
+    final boolean sparse;
+    // number of cells that change
+    final int moved;
+
+    Cycles(int[] matrix) {
+      int n = matrix.length;
+      int changed = 0;
+      for (int i = 0; i < n; i++) {
+        if (matrix[i] != i) {
+          changed++;
+        }
+      }
+      moved = changed;
+      boolean[] seen = new boolean[n];
+      boolean valid = true;
+      for (int target : matrix) {
+        if (target < 0 || target >= n || seen[target]) {
+          valid = false;
+          break;
+        }
+        seen[target] = true;
+      }
+      permutation = valid;
+      if (!valid) {
+        positions = new int[0];
+        starts = new int[] {0};
+        sources = new int[0];
+        sparse = false;
+        return;
+      }
+      int[] pos = new int[n];
+      int[] st = new int[n / 2 + 1];
+      int count = 0;
+      int cycleCount = 0;
+      boolean[] visited = new boolean[n];
+      for (int i = 0; i < n; i++) {
+        if (!visited[i] && matrix[i] != i) {
+          st[cycleCount++] = count;
+          int p = i;
+          do {
+            visited[p] = true;
+            pos[count++] = p;
+            p = matrix[p];
+          } while (p != i);
+        }
+      }
+      st[cycleCount] = count;
+      positions = Arrays.copyOf(pos, count);
+      starts = Arrays.copyOf(st, cycleCount + 1);
+      sources = new int[count];
+      for (int i = 0; i < count; i++) {
+        sources[i] = matrix[positions[i]];
+      }
+      sparse = count < n * SPARSE_THRESHOLD;
     }
-    return sb.toString();
   }
 
 }
@@ -0,0 +1,93 @@
+package dev.aisandbox.twistyeditor.model;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import javax.imageio.ImageIO;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An image held as the PNG it was loaded from, only decoded the first time it is asked for. The
+ * decoded image is kept through a soft reference, so icons that haven't been looked at for a
+ * while can be dropped when memory runs low and decoded again later. Saving writes the original
+ * PNG back without encoding it again.
+ *
+ * <p>Images set from a {@link BufferedImage} are held as they are, and encoded when saved. Changes
+ * drawn onto an image returned by {@link #get()} aren't saved, set a new image instead.
+ */
+@Slf4j
+public final class LazyImage {
+
+  // the PNG, or null if this was made from an image
+  private final byte[] png;
+  // the image this was made from, held strongly as there's nothing to decode it from
+  private final BufferedImage image;
+  private SoftReference<BufferedImage> decoded;
+
+  private LazyImage(byte[] png, BufferedImage image) {
+    this.png = png;
+    this.image = image;
+  }
+
+  /**
+   * @param image the image
+   * @return a holder for the image, or null if it is null
+   */
+  public static LazyImage of(BufferedImage image) {
+    return image == null ? null : new LazyImage(null, image);
+  }
+
+  /**
+   * @param png the PNG bytes, these are kept rather than copied
+   * @return a holder that decodes the PNG when first asked for the image
+   */
+  public static LazyImage ofPng(byte[] png) {
+    return new LazyImage(png, null);
+  }
+
+  /**
+   * Get the image, decoding it if it hasn't been already or has been dropped since.
+   *
+   * @return the image, or null if the PNG can't be decoded
+   */
+  public synchronized BufferedImage get() {
+    if (image != null) {
+      return image;
+    }
+    BufferedImage result = decoded == null ? null : decoded.get();
+    if (result == null) {
+      try {
+        result = ImageIO.read(new ByteArrayInputStream(png));
+      } catch (IOException e) {
+        log.error("Error decoding image", e);
+        return null;
+      }
+      decoded = new SoftReference<>(result);
+    }
+    return result;
+  }
+
+  /**
+   * Get the PNG, as it was loaded or encoded from the image.
+   *
+   * @return the PNG bytes, which must not be changed
+   * @throws IOException if the image can't be encoded
+   */
+  public byte[] getPng() throws IOException {
+    if (png != null) {
+      return png;
+    }
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    if (!ImageIO.write(image, "png", buffer)) {
+      throw new IOException("No PNG writer for image type " + image.getType());
+    }
+    return buffer.toByteArray();
+  }
+
+  /** @return true if the image is in memory, rather than only as a PNG */
+  public synchronized boolean isDecoded() {
+    return image != null || (decoded != null && decoded.get() != null);
+  }
+}
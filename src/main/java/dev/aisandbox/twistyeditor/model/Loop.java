@@ -11,8 +11,26 @@ public class Loop {
   @Getter
   List<Cell> cells = new ArrayList<>();
 
+  // set when the cells change, so the puzzle knows to recompile the move
+  private transient boolean dirty = true;
+
   public void removeCell(Cell c) {
-    cells.remove(c);
+    if (cells.remove(c)) {
+      dirty = true;
+    }
+  }
+
+  /** Flag the loop as changed, call this after editing the cell list. */
+  public void markDirty() {
+    dirty = true;
+  }
+
+  public boolean isDirty() {
+    return dirty;
+  }
+
+  void clearDirty() {
+    dirty = false;
   }
 
   @Override
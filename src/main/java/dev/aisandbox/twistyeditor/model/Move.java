@@ -16,21 +16,73 @@ public class Move {
   /** Constant <code>MOVE_ICON_HEIGHT=100</code>. */
   public static final int MOVE_ICON_HEIGHT = 100;
 
-  @Getter @Setter
-  private BufferedImage imageIcon =
-      new BufferedImage(MOVE_ICON_WIDTH, MOVE_ICON_HEIGHT, BufferedImage.TYPE_INT_RGB);
+  // the icon, decoded when first asked for
+  private LazyImage imageIcon =
+      LazyImage.of(
+          new BufferedImage(MOVE_ICON_WIDTH, MOVE_ICON_HEIGHT, BufferedImage.TYPE_INT_RGB));
 
-  @Getter @Setter String name;
+  @Getter String name;
   @Getter List<Loop> loops = new ArrayList<>();
 
   @Getter @Setter int cost=1;
 
+  // set when the loops change, so the puzzle knows to recompile this move
+  private transient boolean dirty = true;
+
+  /** @return the icon, decoding it if needed */
+  public BufferedImage getImageIcon() {
+    return imageIcon == null ? null : imageIcon.get();
+  }
+
+  public void setImageIcon(BufferedImage imageIcon) {
+    this.imageIcon = LazyImage.of(imageIcon);
+  }
+
+  /** @return the icon, as it was loaded */
+  public LazyImage getLazyImageIcon() {
+    return imageIcon;
+  }
+
+  public void setLazyImageIcon(LazyImage imageIcon) {
+    this.imageIcon = imageIcon;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+    // compile warnings include the name
+    dirty = true;
+  }
+
   public void removeCell(Cell c) {
     for (Loop l : loops) {
       l.removeCell(c);
     }
   }
 
+  /** Flag the move as changed, call this after adding or removing loops. */
+  public void markDirty() {
+    dirty = true;
+  }
+
+  public boolean isDirty() {
+    if (dirty) {
+      return true;
+    }
+    for (Loop l : loops) {
+      if (l.isDirty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  void clearDirty() {
+    dirty = false;
+    for (Loop l : loops) {
+      l.clearDirty();
+    }
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
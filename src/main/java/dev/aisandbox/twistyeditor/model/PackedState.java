@@ -0,0 +1,198 @@
+package dev.aisandbox.twistyeditor.model;
+
+import lombok.Getter;
+
+/**
+ * A puzzle state packed into four bits per cell, sixteen cells to each long. Each nibble holds the
+ * {@link ColourEnum} ordinal of one cell, cell i being in word i / 16 at bit 4 * (i % 16). Unused
+ * nibbles in the last word are always zero, so states can be compared a word at a time.
+ *
+ * <p>The static methods work on packed states stored inside a larger long[], for collections that
+ * want to avoid an object per state.
+ */
+public final class PackedState {
+
+  /** The number of cells packed into each long. */
+  public static final int CELLS_PER_WORD = 16;
+
+  @Getter private final int cardinality;
+  private final long[] words;
+
+  private PackedState(int cardinality, long[] words) {
+    this.cardinality = cardinality;
+    this.words = words;
+  }
+
+  /**
+   * Pack a state held as colour ordinals.
+   *
+   * @param state one {@link ColourEnum} ordinal per cell
+   * @return the packed state
+   */
+  public static PackedState of(byte[] state) {
+    long[] words = new long[wordCount(state.length)];
+    pack(state, words, 0);
+    return new PackedState(state.length, words);
+  }
+
+  /**
+   * Pack a state string, with one colour character per cell.
+   *
+   * @param state the state string
+   * @return the packed state
+   */
+  public static PackedState of(String state) {
+    return of(ColourEnum.encodeState(state));
+  }
+
+  /**
+   * @param cardinality the number of cells
+   * @return the number of longs needed to hold a state
+   */
+  public static int wordCount(int cardinality) {
+    return (cardinality + CELLS_PER_WORD - 1) / CELLS_PER_WORD;
+  }
+
+  /**
+   * Pack a state into part of a long array.
+   *
+   * @param state one {@link ColourEnum} ordinal per cell
+   * @param dst the array to write to
+   * @param offset the first word to write, {@link #wordCount(int)} words are written
+   */
+  public static void pack(byte[] state, long[] dst, int offset) {
+    int n = state.length;
+    int cell = 0;
+    for (int w = 0; cell < n; w++) {
+      long word = 0;
+      int end = Math.min(n, cell + CELLS_PER_WORD);
+      for (int shift = 0; cell < end; cell++, shift += 4) {
+        word |= (long) state[cell] << shift;
+      }
+      dst[offset + w] = word;
+    }
+  }
+
+  /**
+   * Unpack a state from part of a long array.
+   *
+   * @param src the array holding the packed state
+   * @param offset the first word of the state
+   * @param dst the array to write the colour ordinals into, its length is the number of cells
+   */
+  public static void unpack(long[] src, int offset, byte[] dst) {
+    for (int cell = 0; cell < dst.length; cell++) {
+      long word = src[offset + cell / CELLS_PER_WORD];
+      dst[cell] = (byte) ((word >>> (4 * (cell % CELLS_PER_WORD))) & 0xF);
+    }
+  }
+
+  /**
+   * @param cell the index of the cell
+   * @return the colour of the cell
+   */
+  public ColourEnum getColour(int cell) {
+    if (cell < 0 || cell >= cardinality) {
+      throw new IndexOutOfBoundsException("Cell " + cell + " of " + cardinality);
+    }
+    int ordinal = (int) ((words[cell / CELLS_PER_WORD] >>> (4 * (cell % CELLS_PER_WORD))) & 0xF);
+    return ColourEnum.values()[ordinal];
+  }
+
+  /**
+   * @param dst an array of cardinality bytes to write the colour ordinals into
+   */
+  public void toBytes(byte[] dst) {
+    unpack(words, 0, dst);
+  }
+
+  /** @return the state as colour ordinals */
+  public byte[] toBytes() {
+    byte[] result = new byte[cardinality];
+    unpack(words, 0, result);
+    return result;
+  }
+
+  /** @return the state as a string of colour characters */
+  public String toState() {
+    return ColourEnum.decodeState(toBytes());
+  }
+
+  /**
+   * Copy the packed words into part of a long array.
+   *
+   * @param dst the array to write to
+   * @param offset the first word to write
+   */
+  public void copyTo(long[] dst, int offset) {
+    System.arraycopy(words, 0, dst, offset, words.length);
+  }
+
+  /**
+   * Check if this is the solved state, compared a word at a time.
+   *
+   * @param solved the solved state, see {@link Puzzle#getSolvedState()}
+   * @return true if every cell matches
+   */
+  public boolean isSolved(PackedState solved) {
+    return equals(solved);
+  }
+
+  /**
+   * Compare two packed states stored in long arrays.
+   *
+   * @param a the first array
+   * @param aOffset the first word of the state in a
+   * @param b the second array
+   * @param bOffset the first word of the state in b
+   * @param wordCount the number of words in each state
+   * @return true if the states match
+   */
+  public static boolean equals(long[] a, int aOffset, long[] b, int bOffset, int wordCount) {
+    for (int w = 0; w < wordCount; w++) {
+      if (a[aOffset + w] != b[bOffset + w]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hash a packed state stored in a long array, {@link #hashCode()} is the low bits of this.
+   *
+   * @param src the array holding the state
+   * @param offset the first word of the state
+   * @param wordCount the number of words in the state
+   * @return the hash
+   */
+  public static long hash(long[] src, int offset, int wordCount) {
+    long h = 0x9E3779B97F4A7C15L;
+    for (int w = 0; w < wordCount; w++) {
+      h = (h ^ src[offset + w]) * 0xBF58476D1CE4E5B9L;
+      h ^= h >>> 31;
+    }
+    return h;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof PackedState)) {
+      return false;
+    }
+    PackedState other = (PackedState) o;
+    return cardinality == other.cardinality && equals(words, 0, other.words, 0, words.length);
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) hash(words, 0, words.length);
+  }
+
+  @Override
+  public String toString() {
+    return toState();
+  }
+}
@@ -11,10 +11,14 @@ import java.awt.Stroke;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.IntStream;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -28,6 +32,10 @@ public class Puzzle {
   @Getter private List<Move> moves = new ArrayList<>();
   @Getter private Map<String, CompiledMove> compiledMoves = new HashMap<>();
 
+  // results of the last compile, used to skip moves that haven't changed
+  private transient Map<Move, CompiledEntry> compileCache;
+  private transient Cell[] compiledCells;
+
   public BufferedImage getCellImage(Cell highlightCell) {
     BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
     Graphics2D g = image.createGraphics();
@@ -174,51 +182,81 @@ public class Puzzle {
   }
 
   /**
-   * Compile the move based on the latest information
+   * Compile the move based on the latest information.
+   *
+   * <p>Moves that haven't changed since the last compile are reused, unless the cell list has
+   * changed (added, removed or reordered cells), in which case everything is rebuilt.
    *
    * @return returns an (optional) list of warnings
    */
   public Optional<String> compileMoves() {
+    return compileMoves(false);
+  }
+
+  /**
+   * Compile the move based on the latest information, optionally compiling the changed moves in
+   * parallel on the common fork-join pool. The warnings are the same, and in the same order, as a
+   * sequential compile.
+   *
+   * @param parallel compile the moves in parallel
+   * @return returns an (optional) list of warnings
+   */
+  public Optional<String> compileMoves(boolean parallel) {
     List<String> warnings = new ArrayList<>();
     // clear old compiled moves
     compiledMoves = new HashMap<>();
+    // a change to the cell list changes the indices, so throw away everything
+    if (compileCache == null || !cellsMatch(compiledCells)) {
+      compileCache = new IdentityHashMap<>();
+      compiledCells = cells.toArray(new Cell[0]);
+    }
+    // index the cells by identity once, rather than searching the list for every loop cell
+    Map<Cell, Integer> cellIndex = new IdentityHashMap<>(cells.size());
+    for (int i = 0; i < cells.size(); i++) {
+      cellIndex.put(cells.get(i), i);
+    }
+    // work out which moves need compiling
+    Map<Move, CompiledEntry> cache = new IdentityHashMap<>(moves.size());
+    List<Move> changed = new ArrayList<>();
     for (Move move : moves) {
-      CompiledMove cmove = new CompiledMove(cells.size());
-      // copy move image
-      cmove.setImage(move.getImageIcon());
+      CompiledEntry entry = compileCache.get(move);
+      if (entry == null || move.isDirty()) {
+        changed.add(move);
+      } else {
+        cache.put(move, entry);
+      }
+    }
+    // each move compiles independently, so they can be done in any order
+    CompiledEntry[] compiled = new CompiledEntry[changed.size()];
+    IntStream range = IntStream.range(0, compiled.length);
+    if (parallel) {
+      range = range.parallel();
+    }
+    range.forEach(i -> compiled[i] = compileMove(changed.get(i), cellIndex));
+    for (int i = 0; i < compiled.length; i++) {
+      cache.put(changed.get(i), compiled[i]);
+    }
+    // collect the results (and warnings) in move order
+    for (Move move : moves) {
+      CompiledEntry entry = cache.get(move);
+      CompiledMove cmove = entry.getMove();
+      // share the move image, without decoding it
+      cmove.setLazyImage(move.getLazyImageIcon());
       // copy move cost
       cmove.setCost(move.getCost());
-      // setup matrix
-      cmove.resetMove();
-      // check we have loops
-      if (move.getLoops().isEmpty()) {
-        warnings.add("Move '"+move.getName()+"' has no loops");
-      }
-      // add each loop
-      for (int i=0;i<move.getLoops().size();i++) {
-        Loop loop = move.getLoops().get(i);
-        // check we have at least two cells
-        if (loop.getCells().size()<2) {
-          warnings.add("Move '"+move.getName()+"' loop "+i+" has less than two cells - can't compile");
-        } else {
-          for (int j=0;j<loop.getCells().size()-1;j++) {
-            cmove.setMatrixElement(
-                cells.indexOf(loop.getCells().get(j+1)),
-                cells.indexOf(loop.getCells().get(j))
-            );
-          }
-          cmove.setMatrixElement(
-              cells.indexOf(loop.getCells().get(0)),
-              cells.indexOf(loop.getCells().get(loop.getCells().size()-1))
-          );
-        }
-      }
+      warnings.addAll(entry.getWarnings());
       // check for duplicate name
       if (compiledMoves.containsKey(move.getName())) {
         warnings.add("Duplicate move name '"+move.getName()+"'");
       }
       compiledMoves.put(move.getName(),cmove);
     }
+    // only clear the flags once every move is done, in case a loop is shared between moves
+    for (Move move : moves) {
+      move.clearDirty();
+    }
+    // dropping the old cache forgets any moves that have been removed
+    compileCache = cache;
     if (warnings.isEmpty()) {
       return Optional.empty();
     } else {
@@ -226,6 +264,110 @@ public class Puzzle {
     }
   }
 
+  /** Throw away all the cached compiled moves, so the next compile rebuilds everything. */
+  public void invalidateCompiledMoves() {
+    compileCache = null;
+    compiledCells = null;
+  }
+
+  private boolean cellsMatch(Cell[] snapshot) {
+    if (snapshot == null || snapshot.length != cells.size()) {
+      return false;
+    }
+    for (int i = 0; i < snapshot.length; i++) {
+      if (snapshot[i] != cells.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private CompiledEntry compileMove(Move move, Map<Cell, Integer> cellIndex) {
+    List<String> warnings = new ArrayList<>();
+    CompiledMove cmove = new CompiledMove(cells.size());
+    // setup matrix
+    cmove.resetMove();
+    // check we have loops
+    if (move.getLoops().isEmpty()) {
+      warnings.add("Move '"+move.getName()+"' has no loops");
+    }
+    // the loop each cell is in, so a cell used twice can be reported
+    int[] usedBy = new int[cells.size()];
+    Arrays.fill(usedBy, -1);
+    // add each loop
+    for (int i=0;i<move.getLoops().size();i++) {
+      Loop loop = move.getLoops().get(i);
+      // check we have at least two cells
+      if (loop.getCells().size()<2) {
+        warnings.add("Move '"+move.getName()+"' loop "+i+" has less than two cells - can't compile");
+        continue;
+      }
+      // look up every cell first, so a bad loop doesn't leave a half written matrix
+      int[] loopIndex = new int[loop.getCells().size()];
+      boolean missing = false;
+      for (int j = 0; j < loopIndex.length; j++) {
+        Integer index = cellIndex.get(loop.getCells().get(j));
+        if (index == null) {
+          missing = true;
+          break;
+        }
+        loopIndex[j] = index;
+      }
+      if (missing) {
+        warnings.add("Move '"+move.getName()+"' loop "+i+" references a cell that isn't in the puzzle - can't compile");
+      } else {
+        for (int index : loopIndex) {
+          if (usedBy[index] >= 0) {
+            warnings.add("Move '"+move.getName()+"' loop "+i+" uses cell "+index+" which is already in loop "+usedBy[index]);
+          }
+          usedBy[index] = i;
+        }
+        for (int j=0;j<loopIndex.length-1;j++) {
+          cmove.setMatrixElement(loopIndex[j+1], loopIndex[j]);
+        }
+        cmove.setMatrixElement(loopIndex[0], loopIndex[loopIndex.length-1]);
+      }
+    }
+    // the loops are the cycles, store them with the matrix for sparse moves
+    cmove.buildCycles();
+    return new CompiledEntry(cmove, warnings);
+  }
+
+  /** A compiled move along with the warnings generated while compiling it. */
+  @Getter
+  @AllArgsConstructor
+  private static class CompiledEntry {
+    private final CompiledMove move;
+    private final List<String> warnings;
+  }
+
+  /**
+   * Get the starting (solved) state of the puzzle, as used by {@link
+   * CompiledMove#applyMove(byte[], byte[])}.
+   *
+   * @return one {@link ColourEnum} ordinal per cell
+   */
+  public byte[] getInitialState() {
+    byte[] state = new byte[cells.size()];
+    for (int i = 0; i < state.length; i++) {
+      ColourEnum colour = cells.get(i).getColour();
+      if (colour == null) {
+        throw new IllegalStateException("Cell " + i + " has no colour");
+      }
+      state[i] = (byte) colour.ordinal();
+    }
+    return state;
+  }
+
+  /**
+   * Get the solved state, packed for fast comparisons.
+   *
+   * @return the colours of the cells, four bits per cell
+   */
+  public PackedState getSolvedState() {
+    return PackedState.of(getInitialState());
+  }
+
   public BufferedImage getSpritesheet() {
     // work out the image size
     int rows = moves.size() / 6;
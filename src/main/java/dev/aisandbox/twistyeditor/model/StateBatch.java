@@ -0,0 +1,242 @@
+package dev.aisandbox.twistyeditor.model;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import lombok.Getter;
+
+/**
+ * A block of puzzle states held as a structure of arrays, each cell is a column of size bytes so
+ * the {@link ColourEnum} ordinal of cell c in row r is <code>states[c * size + r]</code>. Moves are
+ * applied to every row in a single pass, writing into a second buffer which is then swapped in, so
+ * nothing is allocated per move. Large batches are split between threads using fork-join.
+ *
+ * <p>A batch isn't thread safe, but a single call may use several threads internally.
+ */
+public class StateBatch {
+
+  /**
+   * Batches with fewer cells than this are always updated on the calling thread, as are all
+   * batches when the pool only has one thread.
+   */
+  public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+  @Getter private final int cardinality;
+  @Getter private final int size;
+  private byte[] states;
+  private byte[] spare;
+  // used for rows without a move
+  private CompiledMove identity = null;
+  // rows handled by each fork-join task
+  private final int rowsPerTask;
+  private final ForkJoinPool pool;
+
+  /**
+   * Create a batch where every row is a copy of the same state, split between the threads of the
+   * common pool when it is large.
+   *
+   * @param state the state to copy
+   * @param size the number of rows
+   */
+  public StateBatch(byte[] state, int size) {
+    this(state, size, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Create a batch where every row is a copy of the same state.
+   *
+   * @param state the state to copy
+   * @param size the number of rows
+   * @param pool the pool large batches are split between
+   */
+  public StateBatch(byte[] state, int size, ForkJoinPool pool) {
+    this.cardinality = state.length;
+    this.size = size;
+    this.pool = pool;
+    states = new byte[Math.multiplyExact(size, cardinality)];
+    spare = new byte[states.length];
+    rowsPerTask = Math.max(1, PARALLEL_THRESHOLD / Math.max(1, cardinality));
+    for (int row = 0; row < size; row++) {
+      setState(row, state);
+    }
+  }
+
+  /**
+   * The underlying array, cell c of row r is at <code>c * size + r</code>. This is replaced by
+   * every move so it shouldn't be kept.
+   *
+   * @return the states
+   */
+  public byte[] getStates() {
+    return states;
+  }
+
+  /**
+   * Copy a state out of the batch.
+   *
+   * @param row the row to copy
+   * @param dst an array of at least cardinality bytes
+   */
+  public void getState(int row, byte[] dst) {
+    for (int c = 0; c < cardinality; c++) {
+      dst[c] = states[c * size + row];
+    }
+  }
+
+  /**
+   * Replace one row of the batch.
+   *
+   * @param row the row to replace
+   * @param state the new state
+   */
+  public void setState(int row, byte[] state) {
+    if (state.length != cardinality) {
+      throw new IllegalArgumentException(
+          "State has " + state.length + " cells, expected " + cardinality);
+    }
+    for (int c = 0; c < cardinality; c++) {
+      states[c * size + row] = state[c];
+    }
+  }
+
+  /**
+   * Apply the same move to every row.
+   *
+   * @param move the move to apply
+   */
+  public void applyMove(CompiledMove move) {
+    checkCardinality(move);
+    run(new BatchTask(states, spare, move, null, null, 0, isParallel(), 0, size));
+  }
+
+  /**
+   * Apply a different move to each row, a null entry leaves that row unchanged.
+   *
+   * @param moves one move per row
+   */
+  public void applyMoves(CompiledMove[] moves) {
+    if (moves.length != size) {
+      throw new IllegalArgumentException(
+          "Expected " + size + " moves, one for each row, but got " + moves.length);
+    }
+    // number the distinct moves, so each row only needs an index into a small table
+    Map<CompiledMove, Integer> ids = new IdentityHashMap<>();
+    List<int[]> matrices = new ArrayList<>();
+    int[] rowMoves = new int[size];
+    for (int row = 0; row < size; row++) {
+      CompiledMove move = moves[row];
+      if (move == null) {
+        move = getIdentity();
+      }
+      Integer id = ids.get(move);
+      if (id == null) {
+        checkCardinality(move);
+        id = matrices.size();
+        ids.put(move, id);
+        matrices.add(move.getMatrix());
+      }
+      rowMoves[row] = id;
+    }
+    // sources[c * moveCount + m] is where move m takes cell c from, as an offset into the states
+    int moveCount = matrices.size();
+    int[] sources = new int[cardinality * moveCount];
+    for (int m = 0; m < moveCount; m++) {
+      int[] matrix = matrices.get(m);
+      for (int c = 0; c < cardinality; c++) {
+        sources[c * moveCount + m] = matrix[c] * size;
+      }
+    }
+    run(new BatchTask(states, spare, null, sources, rowMoves, moveCount, isParallel(), 0, size));
+  }
+
+  private CompiledMove getIdentity() {
+    if (identity == null) {
+      identity = CompiledMove.identity(cardinality);
+    }
+    return identity;
+  }
+
+  /** Decided once per move, as the root task may not run on a pool thread. */
+  private boolean isParallel() {
+    return (long) size * cardinality >= PARALLEL_THRESHOLD && pool.getParallelism() >= 2;
+  }
+
+  private void run(BatchTask task) {
+    if (task.parallel) {
+      // submitted rather than invoked, so the root task starts on a pool thread
+      pool.submit(task).join();
+    } else {
+      task.compute();
+    }
+    byte[] swap = states;
+    states = spare;
+    spare = swap;
+  }
+
+  private void checkCardinality(CompiledMove move) {
+    if (move.getCardinality() != cardinality) {
+      throw new IllegalArgumentException(
+          "Move has cardinality " + move.getCardinality() + ", expected " + cardinality);
+    }
+  }
+
+  /** Moves a range of rows from src to dst, splitting in half until the range is small enough. */
+  private class BatchTask extends RecursiveAction {
+
+    private final byte[] src;
+    private final byte[] dst;
+    // either one move for every row, or a table of source offsets and the move used by each row
+    private final CompiledMove move;
+    private final int[] sources;
+    private final int[] rowMoves;
+    private final int moveCount;
+    private final boolean parallel;
+    private final int from;
+    private final int to;
+
+    BatchTask(
+        byte[] src,
+        byte[] dst,
+        CompiledMove move,
+        int[] sources,
+        int[] rowMoves,
+        int moveCount,
+        boolean parallel,
+        int from,
+        int to) {
+      this.src = src;
+      this.dst = dst;
+      this.move = move;
+      this.sources = sources;
+      this.rowMoves = rowMoves;
+      this.moveCount = moveCount;
+      this.parallel = parallel;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (parallel && to - from > rowsPerTask) {
+        int mid = (from + to) >>> 1;
+        invokeAll(
+            new BatchTask(src, dst, move, sources, rowMoves, moveCount, true, from, mid),
+            new BatchTask(src, dst, move, sources, rowMoves, moveCount, true, mid, to));
+      } else if (move != null) {
+        move.applyMoveToColumns(src, dst, size, from, to);
+      } else {
+        // work down each column in turn, so the writes are sequential
+        for (int c = 0; c < cardinality; c++) {
+          int column = c * size;
+          int table = c * moveCount;
+          for (int row = from; row < to; row++) {
+            dst[column + row] = src[sources[table + rowMoves[row]] + row];
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package dev.aisandbox.twistyeditor.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of states encoded as {@link ColourEnum} ordinals. The hash of a
+ * state is the XOR of one key per cell, picked by the cell and its colour, so a move only changes
+ * the keys of the cells it moves. {@link CompiledMove#applyMove(byte[], ZobristHash, long)} uses
+ * this to update a hash in step with the state, in time proportional to the cells moved rather
+ * than the size of the puzzle, for transposition tables and visited sets.
+ *
+ * <p>The keys come from a fixed seed, so hashes are the same from run to run.
+ */
+public class ZobristHash {
+
+  /** The number of colours with keys, the same as fit in a {@link PackedState} cell. */
+  public static final int COLOURS = 16;
+
+  private static final long DEFAULT_SEED = 0x5A6F6272697374L;
+
+  private final int cardinality;
+  // the key for cell p and colour c is at p * COLOURS + c
+  private final long[] keys;
+
+  /**
+   * Create keys for a puzzle.
+   *
+   * @param cardinality the number of cells
+   */
+  public ZobristHash(int cardinality) {
+    this(cardinality, DEFAULT_SEED);
+  }
+
+  /**
+   * Create keys for a puzzle.
+   *
+   * @param cardinality the number of cells
+   * @param seed the seed for the random keys
+   */
+  public ZobristHash(int cardinality, long seed) {
+    this.cardinality = cardinality;
+    keys = new long[cardinality * COLOURS];
+    SplittableRandom random = new SplittableRandom(seed);
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = random.nextLong();
+    }
+  }
+
+  /** @return the number of cells */
+  public int getCardinality() {
+    return cardinality;
+  }
+
+  /**
+   * Get the key for a colour in a cell.
+   *
+   * @param position the cell
+   * @param colour the {@link ColourEnum} ordinal
+   * @return the key
+   */
+  public long getKey(int position, int colour) {
+    return keys[position * COLOURS + colour];
+  }
+
+  /**
+   * Hash a whole state.
+   *
+   * @param state the colour of each cell
+   * @return the XOR of the keys for every cell
+   */
+  public long hash(byte[] state) {
+    long hash = 0;
+    for (int p = 0; p < cardinality; p++) {
+      hash ^= keys[p * COLOURS + state[p]];
+    }
+    return hash;
+  }
+}
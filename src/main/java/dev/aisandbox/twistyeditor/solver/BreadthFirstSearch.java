@@ -0,0 +1,339 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.PackedState;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Enumerates every state that can be reached from the solved colouring of a puzzle, level by
+ * level, using the puzzle's compiled moves. Every move counts as one step whatever its cost.
+ *
+ * <p>States are held packed (see {@link PackedState}), in a {@link PackedStateSet} of everything
+ * seen so far plus lists for the current and next frontier.
+ *
+ * <p>With a {@link PuzzleSymmetry} set, only the representative of each symmetry class is kept,
+ * so the histogram counts classes rather than states.
+ */
+@Slf4j
+public class BreadthFirstSearch {
+
+  private final Puzzle puzzle;
+  private final CompiledMove[] moves;
+
+  /** Stop after this many levels, leaving the result incomplete. */
+  @Getter @Setter private int maxDepth = Integer.MAX_VALUE;
+
+  /** The number of states to size the visited set for, it grows past this if needed. */
+  @Getter @Setter private int expectedStates = 1 << 16;
+
+  /**
+   * The number of threads to use, more than one switches to the sharded search in {@link
+   * #exploreParallel()}.
+   */
+  @Getter @Setter private int threads = 1;
+
+  /** The number of shards for each thread, more shards balance the work better. */
+  @Getter @Setter private int shardsPerThread = 8;
+
+  /**
+   * The symmetries to reduce states by, or null to keep every state. These must map the moves
+   * being explored onto each other.
+   */
+  @Getter @Setter private PuzzleSymmetry symmetry;
+
+  /**
+   * Explore using every compiled move of the puzzle.
+   *
+   * @param puzzle the puzzle, this must have been compiled
+   */
+  public BreadthFirstSearch(Puzzle puzzle) {
+    this(puzzle, puzzle.getCompiledMoves().keySet());
+  }
+
+  /**
+   * Explore using some of the puzzle's moves.
+   *
+   * @param puzzle the puzzle, this must have been compiled
+   * @param moveNames the names of the compiled moves to use
+   */
+  public BreadthFirstSearch(Puzzle puzzle, Collection<String> moveNames) {
+    this.puzzle = puzzle;
+    List<CompiledMove> selected = new ArrayList<>();
+    for (String name : moveNames) {
+      CompiledMove move = puzzle.getCompiledMoves().get(name);
+      if (move == null) {
+        throw new IllegalArgumentException("Unknown move '" + name + "'");
+      }
+      selected.add(move);
+    }
+    moves = selected.toArray(new CompiledMove[0]);
+  }
+
+  /**
+   * Explore a puzzle file from the command line, printing the distance distribution.
+   *
+   * @param args the .tp file, and optionally the maximum depth and number of threads
+   */
+  public static void main(String[] args) {
+    if (args.length < 1) {
+      System.err.println("Usage: BreadthFirstSearch <puzzle.tp> [max depth] [threads]");
+      System.exit(1);
+    }
+    Puzzle puzzle = (Puzzle) PuzzleUtil.getCodec().fromXML(new File(args[0]));
+    BreadthFirstSearch bfs = new BreadthFirstSearch(puzzle);
+    if (args.length > 1) {
+      bfs.setMaxDepth(Integer.parseInt(args[1]));
+    }
+    if (args.length > 2) {
+      bfs.setThreads(Integer.parseInt(args[2]));
+    }
+    ExplorationResult result = bfs.explore();
+    for (int depth = 0; depth < result.getHistogram().size(); depth++) {
+      System.out.println(depth + "\t" + result.getHistogram().get(depth));
+    }
+    System.out.println(
+        (result.isComplete() ? "Complete, " : "Stopped at the depth limit, ")
+            + result.getStateCount()
+            + " states at "
+            + Math.round(result.getStatesPerSecond())
+            + " states/s, peak memory "
+            + result.getPeakMemoryBytes() / (1024 * 1024)
+            + "MB");
+  }
+
+  /**
+   * Run the search.
+   *
+   * @return the number of states at each depth, with timings
+   */
+  public ExplorationResult explore() {
+    if (threads > 1) {
+      return exploreParallel();
+    }
+    long start = System.nanoTime();
+    byte[] state = puzzle.getInitialState();
+    int cardinality = state.length;
+    int wordCount = PackedState.wordCount(cardinality);
+    byte[] next = new byte[cardinality];
+    byte[] canonical = new byte[cardinality];
+    long[] packed = new long[wordCount];
+
+    PackedStateSet visited = new PackedStateSet(wordCount, expectedStates);
+    PackedStateList frontier = new PackedStateList(wordCount);
+    PackedStateList nextFrontier = new PackedStateList(wordCount);
+    PackedState.pack(state, packed, 0);
+    visited.add(packed, 0);
+    frontier.add(packed, 0);
+
+    List<Long> histogram = new ArrayList<>();
+    histogram.add(1L);
+    long peakMemory = 0;
+    int depth = 0;
+    while (frontier.getSize() > 0 && depth < maxDepth) {
+      nextFrontier.clear();
+      for (int i = 0; i < frontier.getSize(); i++) {
+        PackedState.unpack(frontier.getWords(), i * wordCount, state);
+        for (CompiledMove move : moves) {
+          move.applyMove(state, next);
+          PackedState.pack(reduce(next, canonical), packed, 0);
+          if (visited.add(packed, 0)) {
+            nextFrontier.add(packed, 0);
+          }
+        }
+      }
+      peakMemory =
+          Math.max(
+              peakMemory,
+              visited.getMemoryBytes()
+                  + frontier.getMemoryBytes()
+                  + nextFrontier.getMemoryBytes());
+      depth++;
+      if (nextFrontier.getSize() > 0) {
+        histogram.add((long) nextFrontier.getSize());
+        log.info(
+            "Depth {} has {} states, {} in total",
+            depth,
+            nextFrontier.getSize(),
+            visited.getSize());
+      }
+      PackedStateList swap = frontier;
+      frontier = nextFrontier;
+      nextFrontier = swap;
+    }
+    boolean complete = frontier.getSize() == 0;
+    return new ExplorationResult(
+        histogram,
+        visited.getSize(),
+        visited.getSize(),
+        complete,
+        System.nanoTime() - start,
+        peakMemory);
+  }
+
+  /**
+   * Run the search on several threads. States are split into shards by hash, and each shard owns
+   * its part of the visited set and frontier, so nothing is shared between threads while it is
+   * being written. Each level is done in two steps:
+   *
+   * <ol>
+   *   <li>every shard expands its frontier, dropping states that were found at earlier levels
+   *       (the visited sets are only read during this step), and sends the rest to the shard that
+   *       owns them;
+   *   <li>every shard adds the states sent to it to its visited set, and those that are new make
+   *       up its next frontier.
+   * </ol>
+   *
+   * <p>Both steps run as parallel streams on a fork-join pool of {@link #threads} threads, which
+   * steal shards from each other as they finish. The histogram is the same as a single threaded
+   * search.
+   *
+   * @return the number of states at each depth, with timings
+   */
+  public ExplorationResult exploreParallel() {
+    long start = System.nanoTime();
+    byte[] initial = puzzle.getInitialState();
+    int cardinality = initial.length;
+    int wordCount = PackedState.wordCount(cardinality);
+    int shardCount = Integer.highestOneBit(Math.max(1, threads * shardsPerThread - 1)) << 1;
+    int shardShift = 64 - Integer.numberOfTrailingZeros(shardCount);
+
+    PackedStateSet[] visited = new PackedStateSet[shardCount];
+    PackedStateList[] frontier = new PackedStateList[shardCount];
+    // outbox[from][to] holds states found by shard 'from' that belong to shard 'to', these are
+    // only made when the first state is sent and dropped once they've been taken, so there are
+    // never more than the pairs that actually pass states at one level
+    PackedStateList[][] outbox = new PackedStateList[shardCount][shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      visited[i] = new PackedStateSet(wordCount, expectedStates / shardCount);
+      frontier[i] = new PackedStateList(wordCount);
+    }
+    long[] packed = new long[wordCount];
+    PackedState.pack(initial, packed, 0);
+    int home = shardOf(packed, wordCount, shardShift);
+    visited[home].add(packed, 0);
+    frontier[home].add(packed, 0);
+
+    List<Long> histogram = new ArrayList<>();
+    histogram.add(1L);
+    long total = 1;
+    long peakMemory = 0;
+    int depth = 0;
+    long levelSize = 1;
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      while (levelSize > 0 && depth < maxDepth) {
+        // expand each shard's frontier into the outboxes
+        runOnPool(
+            pool,
+            () ->
+                IntStream.range(0, shardCount)
+                    .parallel()
+                    .forEach(
+                        from -> {
+                          byte[] state = new byte[cardinality];
+                          byte[] next = new byte[cardinality];
+                          byte[] canonical = new byte[cardinality];
+                          long[] word = new long[wordCount];
+                          PackedStateList source = frontier[from];
+                          for (int i = 0; i < source.getSize(); i++) {
+                            PackedState.unpack(source.getWords(), i * wordCount, state);
+                            for (CompiledMove move : moves) {
+                              move.applyMove(state, next);
+                              PackedState.pack(reduce(next, canonical), word, 0);
+                              int to = shardOf(word, wordCount, shardShift);
+                              if (!visited[to].contains(word, 0)) {
+                                if (outbox[from][to] == null) {
+                                  outbox[from][to] = new PackedStateList(wordCount);
+                                }
+                                outbox[from][to].add(word, 0);
+                              }
+                            }
+                          }
+                        }));
+        long memory = 0;
+        for (int i = 0; i < shardCount; i++) {
+          memory += visited[i].getMemoryBytes() + frontier[i].getMemoryBytes();
+          for (int j = 0; j < shardCount; j++) {
+            if (outbox[i][j] != null) {
+              memory += outbox[i][j].getMemoryBytes();
+            }
+          }
+        }
+        peakMemory = Math.max(peakMemory, memory);
+        // each shard takes the states sent to it, keeping the new ones as its next frontier
+        runOnPool(
+            pool,
+            () ->
+                IntStream.range(0, shardCount)
+                    .parallel()
+                    .forEach(
+                        to -> {
+                          PackedStateList target = frontier[to];
+                          target.clear();
+                          for (int from = 0; from < shardCount; from++) {
+                            PackedStateList inbox = outbox[from][to];
+                            if (inbox == null) {
+                              continue;
+                            }
+                            for (int i = 0; i < inbox.getSize(); i++) {
+                              if (visited[to].add(inbox.getWords(), i * wordCount)) {
+                                target.add(inbox.getWords(), i * wordCount);
+                              }
+                            }
+                            outbox[from][to] = null;
+                          }
+                        }));
+        depth++;
+        levelSize = 0;
+        for (PackedStateList shard : frontier) {
+          levelSize += shard.getSize();
+        }
+        total += levelSize;
+        if (levelSize > 0) {
+          histogram.add(levelSize);
+          log.info("Depth {} has {} states, {} in total", depth, levelSize, total);
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+    return new ExplorationResult(
+        histogram, total, total, levelSize == 0, System.nanoTime() - start, peakMemory);
+  }
+
+  /** @return the state, or its class representative in the buffer if there is a symmetry */
+  private byte[] reduce(byte[] state, byte[] buffer) {
+    if (symmetry == null) {
+      return state;
+    }
+    symmetry.canonicalise(state, buffer);
+    return buffer;
+  }
+
+  private static int shardOf(long[] state, int wordCount, int shardShift) {
+    // the top bits of the hash, the sets use the bottom bits
+    return shardShift == 64 ? 0 : (int) (PackedState.hash(state, 0, wordCount) >>> shardShift);
+  }
+
+  private static void runOnPool(ForkJoinPool pool, Runnable task) {
+    try {
+      pool.submit(task).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Search interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Search failed", e.getCause());
+    }
+  }
+}
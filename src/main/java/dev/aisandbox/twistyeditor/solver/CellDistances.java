@@ -0,0 +1,309 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import dev.aisandbox.twistyeditor.model.ZobristHash;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The lowest cost of carrying a single sticker from one cell to another, for every pair of cells,
+ * found by a search from each cell over the graph where each move links the cells it moves a
+ * sticker between. With every move costing one this is the number of moves.
+ *
+ * <p>From these, the cost of getting the sticker in each cell to a cell of its own colour can be
+ * added up over a whole state. The sum is a smooth measure of how far a state is from solved, but
+ * as one move carries many stickers it can overestimate. Dividing it by the most cells any move
+ * changes gives a lower bound, which is safe to use as a search heuristic.
+ *
+ * <p>Tables are cached in a .dist file next to the puzzle, and rebuilt if the moves change.
+ */
+@Slf4j
+public class CellDistances {
+
+  /** The distance to a cell that can't be reached, also the cap on stored distances. */
+  public static final int UNREACHABLE = 255;
+
+  // "TPCD"
+  private static final int MAGIC = 0x54504344;
+  private static final int VERSION = 1;
+  private static final int COLOURS = ZobristHash.COLOURS;
+
+  private final int cardinality;
+  private final long fingerprint;
+  // distance from cell i to cell j at i * cardinality + j
+  private final byte[] distances;
+  // distance from cell i to the nearest cell of colour c at i * COLOURS + c
+  private final int[] colourDistances;
+  // the most cells a move with a cost changes
+  private final int maxMoved;
+
+  private CellDistances(Puzzle puzzle, long fingerprint, byte[] distances) {
+    byte[] colours = puzzle.getInitialState();
+    this.cardinality = colours.length;
+    this.fingerprint = fingerprint;
+    this.distances = distances;
+    colourDistances = new int[cardinality * COLOURS];
+    Arrays.fill(colourDistances, UNREACHABLE);
+    for (int i = 0; i < cardinality; i++) {
+      for (int j = 0; j < cardinality; j++) {
+        int index = i * COLOURS + colours[j];
+        colourDistances[index] = Math.min(colourDistances[index], getDistance(i, j));
+      }
+    }
+    int moved = 0;
+    for (CompiledMove move : puzzle.getCompiledMoves().values()) {
+      if (move.getCost() > 0) {
+        moved = Math.max(moved, move.getMovedCount());
+      }
+    }
+    maxMoved = moved;
+  }
+
+  /**
+   * Work out the distances for a puzzle. The search from each cell uses a bucket per cost, so zero
+   * cost moves are fine.
+   *
+   * @param puzzle the puzzle, this must have been compiled
+   * @return the distances
+   */
+  public static CellDistances build(Puzzle puzzle) {
+    long start = System.nanoTime();
+    int n = puzzle.getCells().size();
+    // the cheapest move taking a sticker from cell p to cell q, or -1
+    int[][] edgeCost = new int[n][n];
+    for (int[] row : edgeCost) {
+      Arrays.fill(row, -1);
+    }
+    for (CompiledMove move : puzzle.getCompiledMoves().values()) {
+      for (int q = 0; q < n; q++) {
+        int p = move.getMatrixElement(q);
+        if (p != q && (edgeCost[p][q] < 0 || move.getCost() < edgeCost[p][q])) {
+          edgeCost[p][q] = move.getCost();
+        }
+      }
+    }
+    // as adjacency lists
+    int[][] targets = new int[n][];
+    int[][] costs = new int[n][];
+    for (int p = 0; p < n; p++) {
+      int count = 0;
+      for (int q = 0; q < n; q++) {
+        if (edgeCost[p][q] >= 0) {
+          count++;
+        }
+      }
+      targets[p] = new int[count];
+      costs[p] = new int[count];
+      count = 0;
+      for (int q = 0; q < n; q++) {
+        if (edgeCost[p][q] >= 0) {
+          targets[p][count] = q;
+          costs[p][count++] = edgeCost[p][q];
+        }
+      }
+    }
+    byte[] distances = new byte[n * n];
+    int[] distance = new int[n];
+    int[][] buckets = new int[UNREACHABLE][n];
+    int[] bucketSize = new int[UNREACHABLE];
+    for (int source = 0; source < n; source++) {
+      Arrays.fill(distance, UNREACHABLE);
+      distance[source] = 0;
+      buckets[0][bucketSize[0]++] = source;
+      for (int d = 0; d < UNREACHABLE; d++) {
+        // zero cost moves add to the bucket being worked through
+        for (int i = 0; i < bucketSize[d]; i++) {
+          int p = buckets[d][i];
+          if (distance[p] != d) {
+            continue;
+          }
+          for (int e = 0; e < targets[p].length; e++) {
+            int q = targets[p][e];
+            int cost = d + costs[p][e];
+            if (cost < distance[q]) {
+              distance[q] = cost;
+              // a cell can be queued more than once, so grow the bucket if needed
+              if (bucketSize[cost] == buckets[cost].length) {
+                buckets[cost] = Arrays.copyOf(buckets[cost], bucketSize[cost] * 2);
+              }
+              buckets[cost][bucketSize[cost]++] = q;
+            }
+          }
+        }
+        bucketSize[d] = 0;
+      }
+      for (int q = 0; q < n; q++) {
+        distances[source * n + q] = (byte) distance[q];
+      }
+    }
+    log.info(
+        "Built cell distances for {} cells in {}ms", n, (System.nanoTime() - start) / 1000000);
+    return new CellDistances(puzzle, fingerprint(puzzle), distances);
+  }
+
+  /**
+   * Load the distances for a puzzle from the cache next to its file, building and saving them if
+   * the cache is missing or was made for different moves.
+   *
+   * @param puzzle the puzzle, this must have been compiled
+   * @param puzzleFile the file the puzzle was loaded from
+   * @return the distances
+   * @throws IOException if the cache can't be written
+   */
+  public static CellDistances cached(Puzzle puzzle, Path puzzleFile) throws IOException {
+    Path cache = cacheFile(puzzleFile);
+    long fingerprint = fingerprint(puzzle);
+    int n = puzzle.getCells().size();
+    if (Files.exists(cache)) {
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(cache)))) {
+        if (in.readInt() == MAGIC
+            && in.readInt() == VERSION
+            && in.readLong() == fingerprint
+            && in.readInt() == n) {
+          byte[] distances = new byte[n * n];
+          in.readFully(distances);
+          return new CellDistances(puzzle, fingerprint, distances);
+        }
+        log.info("{} is out of date, rebuilding it", cache);
+      } catch (IOException e) {
+        // such as a file cut short, the rebuilt table replaces it
+        log.warn("{} is unreadable, rebuilding it", cache, e);
+      }
+    }
+    CellDistances result = build(puzzle);
+    result.save(cache);
+    return result;
+  }
+
+  /**
+   * @param puzzleFile the puzzle file
+   * @return the cache file for it, with the extension changed to .dist
+   */
+  public static Path cacheFile(Path puzzleFile) {
+    String name = puzzleFile.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return puzzleFile.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".dist");
+  }
+
+  /** Save the table, replacing any old one in a single step. */
+  private void save(Path file) throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(fingerprint);
+      out.writeInt(cardinality);
+      out.write(distances);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Identify the colours, moves and costs, so a cache isn't used once they change. */
+  private static long fingerprint(Puzzle puzzle) {
+    long hash = Arrays.hashCode(puzzle.getInitialState());
+    for (Map.Entry<String, CompiledMove> entry :
+        new TreeMap<>(puzzle.getCompiledMoves()).entrySet()) {
+      CompiledMove move = entry.getValue();
+      hash = 31 * hash + entry.getKey().hashCode();
+      hash = 31 * hash + move.getCost();
+      for (int i = 0; i < move.getCardinality(); i++) {
+        hash = 31 * hash + move.getMatrixElement(i);
+      }
+    }
+    return hash;
+  }
+
+  /** @return the number of cells */
+  public int getCardinality() {
+    return cardinality;
+  }
+
+  /**
+   * @param from the cell the sticker starts in
+   * @param to the cell it has to get to
+   * @return the lowest cost, or {@link #UNREACHABLE}
+   */
+  public int getDistance(int from, int to) {
+    return distances[from * cardinality + to] & 0xFF;
+  }
+
+  /**
+   * @param from the cell the sticker starts in
+   * @param colour the {@link dev.aisandbox.twistyeditor.model.ColourEnum} ordinal of the sticker
+   * @return the lowest cost of getting it to a cell of its colour, or {@link #UNREACHABLE}
+   */
+  public int getColourDistance(int from, int colour) {
+    return colourDistances[from * COLOURS + colour];
+  }
+
+  /**
+   * Add up, over every cell, the cost of getting its sticker to a cell of the same colour. This is
+   * zero for solved states, but may overestimate the cost of solving. When whole puzzle turns are
+   * free, a sticker can often be turned onto its colour for nothing, so this is weaker.
+   *
+   * @param state the colour of each cell
+   * @return the total
+   */
+  public int sum(byte[] state) {
+    int total = 0;
+    for (int p = 0; p < cardinality; p++) {
+      total += colourDistances[p * COLOURS + state[p]];
+    }
+    return total;
+  }
+
+  /**
+   * A lower bound on the cost of solving a state, the {@link #sum(byte[])} divided (rounding up)
+   * by the most cells one move can change. A move of cost c brings each sticker it moves at most c
+   * closer, so the sum can't drop faster than that per unit of cost.
+   *
+   * @param state the colour of each cell
+   * @return the bound
+   */
+  public int heuristic(byte[] state) {
+    if (maxMoved == 0) {
+      return 0;
+    }
+    return (sum(state) + maxMoved - 1) / maxMoved;
+  }
+
+  /**
+   * Build or load the distances for a puzzle file, and print how far each cell is from the
+   * furthest one.
+   *
+   * @param args the .tp file
+   * @throws IOException if the cache can't be written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: CellDistances <puzzle.tp>");
+      System.exit(1);
+    }
+    File file = new File(args[0]);
+    Puzzle puzzle = (Puzzle) PuzzleUtil.getCodec().fromXML(file);
+    puzzle.compileMoves();
+    CellDistances distances = cached(puzzle, file.toPath());
+    for (int i = 0; i < distances.getCardinality(); i++) {
+      int furthest = 0;
+      for (int j = 0; j < distances.getCardinality(); j++) {
+        furthest = Math.max(furthest, distances.getDistance(i, j));
+      }
+      System.out.println(i + "\t" + furthest);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** The outcome of exploring a puzzle's state space. */
+@Getter
+@AllArgsConstructor
+public class ExplorationResult {
+
+  /** The number of states first reached at each depth, starting with the solved state. */
+  private final List<Long> histogram;
+
+  /** The total number of states found. */
+  private final long stateCount;
+
+  /**
+   * The number of states found by this run, less than the state count if the search carried on
+   * from a checkpoint.
+   */
+  private final long foundCount;
+
+  /** True if every reachable state was found, false if the search stopped at the depth limit. */
+  private final boolean complete;
+
+  private final long elapsedNanos;
+
+  /** The most memory held by the visited set and frontiers at any one time, in bytes. */
+  private final long peakMemoryBytes;
+
+  /** @return the deepest level reached, the puzzle's diameter if the search is complete */
+  public int getMaxDepth() {
+    return histogram.size() - 1;
+  }
+
+  /** @return the number of states found per second by this run */
+  public double getStatesPerSecond() {
+    return elapsedNanos == 0 ? 0 : foundCount * 1e9 / elapsedNanos;
+  }
+}
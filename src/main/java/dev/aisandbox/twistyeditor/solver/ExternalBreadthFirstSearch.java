@@ -0,0 +1,436 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.PackedState;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A breadth-first search that keeps its levels on disk rather than in the heap, for state spaces
+ * too big for {@link BreadthFirstSearch}. Each level is a file of sorted, unique packed states,
+ * read and written through memory mapped windows.
+ *
+ * <p>The next level is found by expanding the current level into sorted runs of at most {@link
+ * #runStates} states, merging the runs, and dropping any state that is in an earlier level (all
+ * the earlier level files are merged against it, as the moves don't have to include their
+ * inverses). A checkpoint file is written after every level, so a search that is stopped carries
+ * on from the last complete level when it is run again with the same work directory.
+ */
+@Slf4j
+public class ExternalBreadthFirstSearch {
+
+  static final String CHECKPOINT_FILE = "checkpoint.properties";
+
+  private final Puzzle puzzle;
+  private final CompiledMove[] moves;
+  private final Path workDir;
+
+  /** Stop after this many levels, leaving the result incomplete. */
+  @Getter @Setter private int maxDepth = Integer.MAX_VALUE;
+
+  /** The number of states sorted in memory before being written out as a run. */
+  @Getter @Setter private int runStates = 1 << 20;
+
+  /** The size of each memory mapped window used to read and write the state files. */
+  @Getter @Setter private int windowBytes = 1 << 24;
+
+  /**
+   * Explore a puzzle using every compiled move.
+   *
+   * @param puzzle the puzzle, this must have been compiled
+   * @param workDir the directory for the level files and checkpoint
+   */
+  public ExternalBreadthFirstSearch(Puzzle puzzle, Path workDir) {
+    this.puzzle = puzzle;
+    this.workDir = workDir;
+    // sort the moves by name so the order (and fingerprint) doesn't depend on the map
+    moves =
+        new TreeSet<>(puzzle.getCompiledMoves().keySet())
+            .stream()
+            .map(name -> puzzle.getCompiledMoves().get(name))
+            .toArray(CompiledMove[]::new);
+  }
+
+  /**
+   * Load a puzzle file and create a search for it.
+   *
+   * @param puzzleFile the .tp file
+   * @param workDir the directory for the level files and checkpoint
+   * @return the search
+   */
+  public static ExternalBreadthFirstSearch forFile(File puzzleFile, Path workDir) {
+    return new ExternalBreadthFirstSearch(
+        (Puzzle) PuzzleUtil.getCodec().fromXML(puzzleFile), workDir);
+  }
+
+  /**
+   * Explore a puzzle file from the command line, printing the distance distribution.
+   *
+   * @param args the .tp file, the work directory, and optionally the maximum depth
+   * @throws IOException if the work files can't be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: ExternalBreadthFirstSearch <puzzle.tp> <work dir> [max depth]");
+      System.exit(1);
+    }
+    ExternalBreadthFirstSearch bfs = forFile(new File(args[0]), Paths.get(args[1]));
+    if (args.length > 2) {
+      bfs.setMaxDepth(Integer.parseInt(args[2]));
+    }
+    ExplorationResult result = bfs.explore();
+    for (int depth = 0; depth < result.getHistogram().size(); depth++) {
+      System.out.println(depth + "\t" + result.getHistogram().get(depth));
+    }
+    System.out.println(
+        (result.isComplete() ? "Complete, " : "Stopped at the depth limit, ")
+            + result.getStateCount()
+            + " states at "
+            + Math.round(result.getStatesPerSecond())
+            + " states/s");
+  }
+
+  /**
+   * Run the search, carrying on from the checkpoint in the work directory if there is one.
+   *
+   * @return the number of states at each depth, with timings for this run only. The peak memory
+   *     is the heap used to sort the runs, as the levels themselves are on disk.
+   * @throws IOException if the work files can't be read or written
+   */
+  public ExplorationResult explore() throws IOException {
+    long start = System.nanoTime();
+    Files.createDirectories(workDir);
+    byte[] state = puzzle.getInitialState();
+    int cardinality = state.length;
+    int wordCount = PackedState.wordCount(cardinality);
+    String fingerprint = fingerprint(state);
+
+    List<Long> histogram = loadCheckpoint(fingerprint);
+    if (histogram == null) {
+      // a new search, level 0 is the solved state
+      long[] packed = new long[wordCount];
+      PackedState.pack(state, packed, 0);
+      try (StateFileWriter writer = new StateFileWriter(levelFile(0), wordCount, windowBytes)) {
+        writer.write(packed, 0);
+      }
+      histogram = new ArrayList<>();
+      histogram.add(1L);
+      saveCheckpoint(fingerprint, histogram, false);
+    } else {
+      log.info("Resuming from depth {}", histogram.size() - 1);
+    }
+    long found = 0;
+    long runBytes = 0;
+    boolean complete = histogram.get(histogram.size() - 1) == 0;
+    while (!complete && histogram.size() - 1 < maxDepth) {
+      int depth = histogram.size() - 1;
+      // throw away anything left by a run that stopped part way through this level
+      deleteRuns();
+      long[] buffer = new long[Math.multiplyExact(runStates, wordCount)];
+      runBytes = 8L * buffer.length;
+      List<Path> runs = expandLevel(depth, cardinality, wordCount, buffer);
+      long count = mergeLevel(depth, runs, wordCount);
+      deleteRuns();
+      histogram.add(count);
+      found += count;
+      complete = count == 0;
+      log.info("Depth {} has {} states", depth + 1, count);
+      saveCheckpoint(fingerprint, histogram, complete);
+    }
+    if (complete) {
+      // the last entry is the empty level that showed the search was finished
+      histogram = histogram.subList(0, histogram.size() - 1);
+    }
+    long total = histogram.stream().mapToLong(Long::longValue).sum();
+    return new ExplorationResult(
+        new ArrayList<>(histogram), total, found, complete, System.nanoTime() - start, runBytes);
+  }
+
+  /** Expand every state of a level into sorted, unique runs. */
+  private List<Path> expandLevel(int depth, int cardinality, int wordCount, long[] buffer)
+      throws IOException {
+    List<Path> runs = new ArrayList<>();
+    byte[] state = new byte[cardinality];
+    byte[] next = new byte[cardinality];
+    int used = 0;
+    try (StateFileReader reader = new StateFileReader(levelFile(depth), wordCount, windowBytes)) {
+      while (reader.next()) {
+        PackedState.unpack(reader.getCurrent(), 0, state);
+        for (CompiledMove move : moves) {
+          if (used == runStates) {
+            runs.add(writeRun(buffer, used, wordCount, runs.size()));
+            used = 0;
+          }
+          move.applyMove(state, next);
+          PackedState.pack(next, buffer, used * wordCount);
+          used++;
+        }
+      }
+    }
+    if (used > 0) {
+      runs.add(writeRun(buffer, used, wordCount, runs.size()));
+    }
+    return runs;
+  }
+
+  private Path writeRun(long[] buffer, int count, int wordCount, int index) throws IOException {
+    sort(buffer, 0, count, wordCount, new long[wordCount]);
+    Path file = workDir.resolve("run-" + index + ".bin");
+    try (StateFileWriter writer = new StateFileWriter(file, wordCount, windowBytes)) {
+      for (int i = 0; i < count; i++) {
+        // the run is sorted, so duplicates are next to each other
+        if (i == 0 || compare(buffer, i * wordCount, buffer, (i - 1) * wordCount, wordCount) != 0) {
+          writer.write(buffer, i * wordCount);
+        }
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Merge the runs into the next level, leaving out duplicates and states from earlier levels.
+   *
+   * @return the number of states in the new level
+   */
+  private long mergeLevel(int depth, List<Path> runs, int wordCount) throws IOException {
+    List<StateFileReader> open = new ArrayList<>();
+    try {
+      PriorityQueue<StateFileReader> queue =
+          new PriorityQueue<>(
+              Comparator.comparing(
+                  StateFileReader::getCurrent, (a, b) -> compare(a, 0, b, 0, wordCount)));
+      for (Path run : runs) {
+        StateFileReader reader = new StateFileReader(run, wordCount, windowBytes);
+        open.add(reader);
+        if (reader.next()) {
+          queue.add(reader);
+        }
+      }
+      // earlier levels, each one is read alongside the merge
+      StateFileReader[] previous = new StateFileReader[depth + 1];
+      boolean[] hasCurrent = new boolean[depth + 1];
+      for (int d = 0; d <= depth; d++) {
+        previous[d] = new StateFileReader(levelFile(d), wordCount, windowBytes);
+        open.add(previous[d]);
+        hasCurrent[d] = previous[d].next();
+      }
+      long[] last = new long[wordCount];
+      boolean hasLast = false;
+      Path target = levelFile(depth + 1);
+      Path partial = workDir.resolve(target.getFileName() + ".part");
+      long count;
+      try (StateFileWriter writer = new StateFileWriter(partial, wordCount, windowBytes)) {
+        while (!queue.isEmpty()) {
+          StateFileReader reader = queue.poll();
+          long[] candidate = reader.getCurrent();
+          if (!hasLast || compare(candidate, 0, last, 0, wordCount) != 0) {
+            System.arraycopy(candidate, 0, last, 0, wordCount);
+            hasLast = true;
+            if (!inEarlierLevel(last, previous, hasCurrent, wordCount)) {
+              writer.write(last, 0);
+            }
+          }
+          if (reader.next()) {
+            queue.add(reader);
+          }
+        }
+        count = writer.getStateCount();
+      }
+      Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+      return count;
+    } finally {
+      for (StateFileReader reader : open) {
+        reader.close();
+      }
+    }
+  }
+
+  /** Advance each earlier level up to the state, and check if any of them hold it. */
+  private static boolean inEarlierLevel(
+      long[] state, StateFileReader[] previous, boolean[] hasCurrent, int wordCount)
+      throws IOException {
+    boolean found = false;
+    for (int d = 0; d < previous.length; d++) {
+      while (hasCurrent[d]) {
+        int c = compare(previous[d].getCurrent(), 0, state, 0, wordCount);
+        if (c < 0) {
+          hasCurrent[d] = previous[d].next();
+        } else {
+          found |= c == 0;
+          break;
+        }
+      }
+    }
+    return found;
+  }
+
+  private Path levelFile(int depth) {
+    return workDir.resolve("level-" + depth + ".bin");
+  }
+
+  private void deleteRuns() throws IOException {
+    try (Stream<Path> files = Files.list(workDir)) {
+      for (Path file : files.collect(Collectors.toList())) {
+        String name = file.getFileName().toString();
+        if (name.startsWith("run-") || name.endsWith(".part")) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  /** Identify the puzzle, so a checkpoint isn't used with a different puzzle. */
+  private String fingerprint(byte[] initial) {
+    // hash the matrices themselves, cell numbers don't fit in a byte on bigger puzzles
+    long hash = Arrays.hashCode(initial);
+    for (CompiledMove move : moves) {
+      for (int i = 0; i < move.getCardinality(); i++) {
+        hash = 31 * hash + move.getMatrixElement(i);
+      }
+    }
+    return initial.length + ":" + moves.length + ":" + Long.toHexString(hash);
+  }
+
+  /**
+   * Read the histogram from the checkpoint.
+   *
+   * @return the histogram, or null if there is no checkpoint
+   */
+  private List<Long> loadCheckpoint(String fingerprint) throws IOException {
+    Path file = workDir.resolve(CHECKPOINT_FILE);
+    if (!Files.exists(file)) {
+      return null;
+    }
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+    }
+    if (!fingerprint.equals(properties.getProperty("puzzle"))) {
+      throw new IllegalStateException(
+          "The checkpoint in " + workDir + " is for a different puzzle, use an empty directory");
+    }
+    List<Long> histogram = new ArrayList<>();
+    for (String count : properties.getProperty("histogram").split(",")) {
+      histogram.add(Long.parseLong(count));
+    }
+    if (Boolean.parseBoolean(properties.getProperty("complete"))) {
+      histogram.add(0L);
+    }
+    return histogram;
+  }
+
+  /** Save the checkpoint, replacing the old one in a single step. */
+  private void saveCheckpoint(String fingerprint, List<Long> histogram, boolean complete)
+      throws IOException {
+    List<Long> levels = complete ? histogram.subList(0, histogram.size() - 1) : histogram;
+    Properties properties = new Properties();
+    properties.setProperty("puzzle", fingerprint);
+    properties.setProperty(
+        "histogram", levels.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    properties.setProperty("complete", String.valueOf(complete));
+    Path temp = workDir.resolve(CHECKPOINT_FILE + ".tmp");
+    try (OutputStream out = Files.newOutputStream(temp)) {
+      properties.store(out, "Breadth-first search checkpoint");
+    }
+    Files.move(
+        temp,
+        workDir.resolve(CHECKPOINT_FILE),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Compare two packed states a word at a time, as signed longs. */
+  static int compare(long[] a, int aOffset, long[] b, int bOffset, int wordCount) {
+    for (int w = 0; w < wordCount; w++) {
+      int c = Long.compare(a[aOffset + w], b[bOffset + w]);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+
+  /** Sort the states from..to (exclusive) in place, using quicksort on whole states. */
+  static void sort(long[] data, int from, int to, int wordCount, long[] pivot) {
+    while (to - from > 16) {
+      // median of three as the pivot
+      int mid = (from + to) >>> 1;
+      int a = from;
+      int b = mid;
+      int c = to - 1;
+      if (compare(data, a * wordCount, data, b * wordCount, wordCount) > 0) {
+        int t = a;
+        a = b;
+        b = t;
+      }
+      if (compare(data, b * wordCount, data, c * wordCount, wordCount) > 0) {
+        b = c;
+        if (compare(data, a * wordCount, data, b * wordCount, wordCount) > 0) {
+          b = a;
+        }
+      }
+      System.arraycopy(data, b * wordCount, pivot, 0, wordCount);
+      int i = from;
+      int j = to - 1;
+      while (i <= j) {
+        while (compare(data, i * wordCount, pivot, 0, wordCount) < 0) {
+          i++;
+        }
+        while (compare(data, j * wordCount, pivot, 0, wordCount) > 0) {
+          j--;
+        }
+        if (i <= j) {
+          swap(data, i, j, wordCount);
+          i++;
+          j--;
+        }
+      }
+      // recurse into the smaller half, loop on the larger one
+      if (j + 1 - from < to - i) {
+        sort(data, from, j + 1, wordCount, pivot);
+        from = i;
+      } else {
+        sort(data, i, to, wordCount, pivot);
+        to = j + 1;
+      }
+    }
+    // insertion sort for short ranges
+    for (int i = from + 1; i < to; i++) {
+      for (int j = i;
+          j > from && compare(data, (j - 1) * wordCount, data, j * wordCount, wordCount) > 0;
+          j--) {
+        swap(data, j - 1, j, wordCount);
+      }
+    }
+  }
+
+  private static void swap(long[] data, int i, int j, int wordCount) {
+    int a = i * wordCount;
+    int b = j * wordCount;
+    for (int w = 0; w < wordCount; w++) {
+      long t = data[a + w];
+      data[a + w] = data[b + w];
+      data[b + w] = t;
+    }
+  }
+}
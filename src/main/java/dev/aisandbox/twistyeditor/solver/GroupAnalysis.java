@@ -0,0 +1,173 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.Cell;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Loop;
+import dev.aisandbox.twistyeditor.model.Move;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A report on the group generated by a puzzle's compiled moves: its order, which cells can reach
+ * which, and any moves that aren't proper permutations.
+ *
+ * <p>The order counts every arrangement of the cells, so when two cells have the same colour (such
+ * as the centres of a 4x4x4) some arrangements look the same and the number of distinct coloured
+ * states is smaller. Malformed moves are left out of the group.
+ */
+@Getter
+@AllArgsConstructor
+public class GroupAnalysis {
+
+  /**
+   * The exact number of elements in the group, see {@link PermutationGroup} for how it is checked.
+   */
+  private final BigInteger order;
+
+  /** The sets of cells that can be moved into each other, largest first. */
+  private final List<List<Integer>> orbits;
+
+  /** A description of each problem found in the moves, empty if they are all well formed. */
+  private final List<String> problems;
+
+  private final long elapsedNanos;
+
+  /**
+   * Analyse a puzzle.
+   *
+   * @param puzzle the puzzle, this must have been compiled
+   * @return the report
+   */
+  public static GroupAnalysis analyse(Puzzle puzzle) {
+    long start = System.nanoTime();
+    int n = puzzle.getCells().size();
+    List<String> problems = new ArrayList<>();
+    Map<Cell, Integer> cellIndex = new IdentityHashMap<>(n);
+    for (int i = 0; i < n; i++) {
+      cellIndex.put(puzzle.getCells().get(i), i);
+    }
+    for (Move move : puzzle.getMoves()) {
+      checkLoops(move, cellIndex, problems);
+    }
+    List<int[]> generators = new ArrayList<>();
+    for (Map.Entry<String, CompiledMove> entry :
+        new TreeMap<>(puzzle.getCompiledMoves()).entrySet()) {
+      CompiledMove move = entry.getValue();
+      if (move.getCardinality() != n) {
+        problems.add(
+            "Compiled move '" + entry.getKey() + "' has " + move.getCardinality() + " cells, not "
+                + n);
+        continue;
+      }
+      int[] matrix = new int[n];
+      int[] takenBy = new int[n];
+      boolean wellFormed = true;
+      for (int i = 0; i < n; i++) {
+        matrix[i] = move.getMatrixElement(i);
+        if (matrix[i] < 0 || matrix[i] >= n) {
+          problems.add(
+              "Compiled move '" + entry.getKey() + "' moves cell " + matrix[i] + " to " + i
+                  + ", which isn't a cell");
+          wellFormed = false;
+          break;
+        }
+        if (takenBy[matrix[i]] != 0) {
+          problems.add(
+              "Compiled move '" + entry.getKey() + "' moves cell " + matrix[i] + " to both "
+                  + (takenBy[matrix[i]] - 1) + " and " + i);
+          wellFormed = false;
+        }
+        takenBy[matrix[i]] = i + 1;
+      }
+      if (wellFormed) {
+        generators.add(matrix);
+      }
+    }
+    PermutationGroup group = new PermutationGroup(n, generators);
+    return new GroupAnalysis(
+        group.getOrder(), orbits(n, generators), problems, System.nanoTime() - start);
+  }
+
+  /** Look for cells used more than once in a move's loops, which the compiler can't honour. */
+  private static void checkLoops(Move move, Map<Cell, Integer> cellIndex, List<String> problems) {
+    Map<Cell, Integer> usedBy = new IdentityHashMap<>();
+    for (int l = 0; l < move.getLoops().size(); l++) {
+      Loop loop = move.getLoops().get(l);
+      for (Cell cell : loop.getCells()) {
+        Integer previous = usedBy.put(cell, l);
+        if (previous != null) {
+          problems.add(
+              "Move '" + move.getName() + "' uses cell " + cellIndex.get(cell) + " in loop "
+                  + previous + (previous == l ? " twice" : " and loop " + l));
+        }
+      }
+    }
+  }
+
+  /** Join the cells that each generator connects, with a union-find. */
+  private static List<List<Integer>> orbits(int n, List<int[]> generators) {
+    int[] parent = new int[n];
+    for (int p = 0; p < n; p++) {
+      parent[p] = p;
+    }
+    for (int[] generator : generators) {
+      for (int p = 0; p < n; p++) {
+        int a = find(parent, p);
+        int b = find(parent, generator[p]);
+        if (a != b) {
+          parent[Math.max(a, b)] = Math.min(a, b);
+        }
+      }
+    }
+    Map<Integer, List<Integer>> byRoot = new TreeMap<>();
+    for (int p = 0; p < n; p++) {
+      byRoot.computeIfAbsent(find(parent, p), root -> new ArrayList<>()).add(p);
+    }
+    List<List<Integer>> result = new ArrayList<>(byRoot.values());
+    result.sort((a, b) -> b.size() - a.size());
+    return result;
+  }
+
+  private static int find(int[] parent, int p) {
+    while (parent[p] != p) {
+      parent[p] = parent[parent[p]];
+      p = parent[p];
+    }
+    return p;
+  }
+
+  /** @return true if no problems were found */
+  public boolean isWellFormed() {
+    return problems.isEmpty();
+  }
+
+  /**
+   * Print the report for a puzzle file.
+   *
+   * @param args the .tp file
+   */
+  public static void main(String[] args) {
+    if (args.length < 1) {
+      System.err.println("Usage: GroupAnalysis <puzzle.tp>");
+      System.exit(1);
+    }
+    Puzzle puzzle = (Puzzle) PuzzleUtil.getCodec().fromXML(new File(args[0]));
+    puzzle.compileMoves().ifPresent(System.out::println);
+    GroupAnalysis analysis = analyse(puzzle);
+    analysis.getProblems().forEach(System.out::println);
+    System.out.println("Group order: " + analysis.getOrder());
+    for (List<Integer> orbit : analysis.getOrbits()) {
+      System.out.println("Orbit of " + orbit.size() + ": " + orbit);
+    }
+    System.out.printf("Analysed in %.1fms%n", analysis.getElapsedNanos() / 1e6);
+  }
+}
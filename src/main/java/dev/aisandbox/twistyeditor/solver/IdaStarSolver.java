@@ -0,0 +1,297 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Finds lowest cost solutions using iterative deepening A*, with the compiled moves of a puzzle
+ * and their costs. The heuristic is the largest value from a set of {@link PatternDatabase}s, or
+ * zero if there are none.
+ *
+ * <p>The search tracks where each sticker is (by its original cell), and the puzzle is solved once
+ * every sticker is on a cell of its own colour.
+ *
+ * <p>Moves with no cost, such as the whole puzzle rotations from the cuboid builder, don't raise
+ * the bound, so searching them one at a time could go round in circles forever. Instead every
+ * position the zero cost moves can reach together (24 for a cube's rotations) is worked out up
+ * front, and the search makes at most one of these combined steps between moves that cost
+ * something. When the zero cost moves just relabel the other moves (turning the cube and then
+ * doing R is the same as doing some other face turn and then turning the cube), they can all be
+ * left to the end, so they are only tried as the last step.
+ *
+ * <p>Sequences of the costed moves that {@link MovePruning} finds redundant, such as a move
+ * followed by its inverse, are skipped.
+ */
+@Slf4j
+public class IdaStarSolver {
+
+  /** The most positions the zero cost moves may reach together. */
+  public static final int MAX_ZERO_COST_POSITIONS = 1 << 16;
+
+  private final int cardinality;
+  private final byte[] colours;
+  private final List<PatternDatabase> databases;
+  // every step the search can take, the moves that cost something followed by the zero cost
+  // combinations, each as the cell a sticker in cell p moves to
+  private final int[][] steps;
+  private final int[] costs;
+  private final List<List<String>> stepNames = new ArrayList<>();
+  // numbered the same as the costed steps
+  private final MovePruning pruning;
+  // true if the zero cost steps are only needed at the end of a solution
+  private final boolean zeroCostAtEnd;
+
+  /** Give up once the bound passes this cost. */
+  @Getter @Setter private int maxCost = 30;
+
+  // one state per depth
+  private final List<int[]> stack = new ArrayList<>();
+  private int[] path = new int[16];
+  private long nodes;
+  private int nextBound;
+
+  /**
+   * Create a solver.
+   *
+   * @param puzzle the puzzle, this must have been compiled
+   * @param databases the pattern databases to use for the heuristic, built for the same puzzle
+   */
+  public IdaStarSolver(Puzzle puzzle, List<PatternDatabase> databases) {
+    colours = puzzle.getInitialState();
+    cardinality = colours.length;
+    this.databases = new ArrayList<>(databases);
+    // sort the moves so the solutions don't depend on the map order
+    TreeMap<String, CompiledMove> moves = new TreeMap<>(puzzle.getCompiledMoves());
+    List<int[]> stepList = new ArrayList<>();
+    List<Integer> costList = new ArrayList<>();
+    List<String> zeroNames = new ArrayList<>();
+    List<int[]> zeroMoves = new ArrayList<>();
+    TreeMap<String, CompiledMove> costed = new TreeMap<>();
+    for (Map.Entry<String, CompiledMove> entry : moves.entrySet()) {
+      int[] move = movesTo(entry.getValue());
+      if (entry.getValue().getCost() == 0) {
+        zeroNames.add(entry.getKey());
+        zeroMoves.add(move);
+      } else {
+        stepList.add(move);
+        costList.add(entry.getValue().getCost());
+        stepNames.add(Arrays.asList(entry.getKey()));
+        costed.put(entry.getKey(), entry.getValue());
+      }
+    }
+    pruning = new MovePruning(costed);
+    zeroCostAtEnd = relabelsMoves(zeroMoves, stepList, costList);
+    addZeroCostSteps(zeroNames, zeroMoves, stepList, costList);
+    steps = stepList.toArray(new int[0][]);
+    costs = costList.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /** @return where a sticker in each cell moves to, the inverse of the move's matrix */
+  private int[] movesTo(CompiledMove move) {
+    int[] result = new int[cardinality];
+    Arrays.fill(result, -1);
+    for (int p = 0; p < cardinality; p++) {
+      result[move.getMatrixElement(p)] = p;
+    }
+    for (int p = 0; p < cardinality; p++) {
+      if (result[p] < 0) {
+        throw new IllegalArgumentException("Move is not a permutation, cell " + p + " is lost");
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Check if each zero cost move z just relabels the moves that cost something, so that z then m
+   * is always the same as some m' (with the same cost) then z. If so, any zero cost moves in a
+   * solution can be moved to the end.
+   */
+  private boolean relabelsMoves(List<int[]> zeroMoves, List<int[]> moves, List<Integer> costs) {
+    Map<String, Integer> costOf = new HashMap<>();
+    for (int m = 0; m < moves.size(); m++) {
+      costOf.put(Arrays.toString(moves.get(m)), costs.get(m));
+    }
+    int[] relabelled = new int[cardinality];
+    int[] inverse = new int[cardinality];
+    for (int[] z : zeroMoves) {
+      for (int p = 0; p < cardinality; p++) {
+        inverse[z[p]] = p;
+      }
+      for (int m = 0; m < moves.size(); m++) {
+        // m' = z, m, z inverse
+        for (int p = 0; p < cardinality; p++) {
+          relabelled[p] = inverse[moves.get(m)[z[p]]];
+        }
+        if (!costs.get(m).equals(costOf.get(Arrays.toString(relabelled)))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Find every position the zero cost moves reach from the solved puzzle, with the shortest list
+   * of moves to get there, and add each one (apart from doing nothing) as a step.
+   */
+  private void addZeroCostSteps(
+      List<String> names, List<int[]> moves, List<int[]> stepList, List<Integer> costList) {
+    int[] identity = new int[cardinality];
+    for (int p = 0; p < cardinality; p++) {
+      identity[p] = p;
+    }
+    Map<String, Integer> seen = new HashMap<>();
+    List<int[]> found = new ArrayList<>();
+    List<List<String>> foundNames = new ArrayList<>();
+    seen.put(Arrays.toString(identity), 0);
+    found.add(identity);
+    foundNames.add(new ArrayList<>());
+    for (int i = 0; i < found.size(); i++) {
+      for (int m = 0; m < moves.size(); m++) {
+        int[] combined = new int[cardinality];
+        for (int p = 0; p < cardinality; p++) {
+          combined[p] = moves.get(m)[found.get(i)[p]];
+        }
+        if (seen.putIfAbsent(Arrays.toString(combined), found.size()) == null) {
+          if (found.size() == MAX_ZERO_COST_POSITIONS) {
+            throw new IllegalArgumentException(
+                "The zero cost moves reach more than " + MAX_ZERO_COST_POSITIONS + " positions");
+          }
+          List<String> sequence = new ArrayList<>(foundNames.get(i));
+          sequence.add(names.get(m));
+          found.add(combined);
+          foundNames.add(sequence);
+        }
+      }
+    }
+    for (int i = 1; i < found.size(); i++) {
+      stepList.add(found.get(i));
+      costList.add(0);
+      stepNames.add(foundNames.get(i));
+    }
+  }
+
+  /**
+   * Solve a position.
+   *
+   * @param position a move (such as a scramble from {@link
+   *     dev.aisandbox.twistyeditor.model.AlgorithmCompiler}) taking the solved puzzle to the
+   *     position to solve
+   * @return a lowest cost solution, or empty if there is none costing {@link #maxCost} or less
+   */
+  public Optional<Solution> solve(CompiledMove position) {
+    long start = System.nanoTime();
+    nodes = 0;
+    int[] where = state(0);
+    System.arraycopy(movesTo(position), 0, where, 0, cardinality);
+    int bound = heuristic(where);
+    while (bound <= maxCost) {
+      nextBound = Integer.MAX_VALUE;
+      int length = search(0, 0, bound, MovePruning.NONE, MovePruning.NONE);
+      if (length >= 0) {
+        List<String> moves = new ArrayList<>();
+        int cost = 0;
+        for (int i = 0; i < length; i++) {
+          moves.addAll(stepNames.get(path[i]));
+          cost += costs[path[i]];
+        }
+        return Optional.of(new Solution(moves, cost, nodes, System.nanoTime() - start));
+      }
+      if (nextBound == Integer.MAX_VALUE) {
+        break;
+      }
+      log.debug("No solution costing {}, {} nodes so far", bound, nodes);
+      bound = nextBound;
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Search below a state.
+   *
+   * @param depth the number of steps made so far
+   * @param cost the cost of those steps
+   * @param bound the highest total cost to look at
+   * @param secondLast the costed step before last, or {@link MovePruning#NONE}
+   * @param last the last step if it cost something, or {@link MovePruning#NONE}
+   * @return the number of steps in the solution, or -1 if none was found
+   */
+  private int search(int depth, int cost, int bound, int secondLast, int last) {
+    // the last step cost nothing, so another one would be wasted
+    boolean afterZeroCost = depth > 0 && last == MovePruning.NONE;
+    nodes++;
+    int[] where = stack.get(depth);
+    int estimate = cost + heuristic(where);
+    if (estimate > bound) {
+      nextBound = Math.min(nextBound, estimate);
+      return -1;
+    }
+    if (isSolved(where)) {
+      return depth;
+    }
+    int[] next = state(depth + 1);
+    if (depth == path.length) {
+      path = Arrays.copyOf(path, depth * 2);
+    }
+    for (int s = 0; s < steps.length; s++) {
+      boolean zeroCost = costs[s] == 0;
+      if (zeroCost ? afterZeroCost : !pruning.isAllowed(secondLast, last, s)) {
+        continue;
+      }
+      int[] step = steps[s];
+      for (int t = 0; t < cardinality; t++) {
+        next[t] = step[where[t]];
+      }
+      path[depth] = s;
+      if (zeroCost && zeroCostAtEnd) {
+        // only worth doing if it finishes the puzzle
+        if (isSolved(next)) {
+          return depth + 1;
+        }
+        continue;
+      }
+      int found =
+          zeroCost
+              ? search(depth + 1, cost, bound, MovePruning.NONE, MovePruning.NONE)
+              : search(depth + 1, cost + costs[s], bound, last, s);
+      if (found >= 0) {
+        return found;
+      }
+    }
+    return -1;
+  }
+
+  private int heuristic(int[] where) {
+    int h = 0;
+    for (PatternDatabase database : databases) {
+      h = Math.max(h, database.lookup(where));
+    }
+    return h;
+  }
+
+  private boolean isSolved(int[] where) {
+    for (int t = 0; t < cardinality; t++) {
+      if (colours[where[t]] != colours[t]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int[] state(int depth) {
+    while (stack.size() <= depth) {
+      stack.add(new int[cardinality]);
+    }
+    return stack.get(depth);
+  }
+}
@@ -0,0 +1,37 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import java.util.Arrays;
+
+/** A growable list of ints, for search buckets and per-state records. */
+class IntList {
+  private int[] data = new int[1024];
+  private int size = 0;
+
+  void add(int value) {
+    if (size == data.length) {
+      data = Arrays.copyOf(data, size * 2);
+    }
+    data[size++] = value;
+  }
+
+  int get(int i) {
+    return data[i];
+  }
+
+  void set(int i, int value) {
+    data[i] = value;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void clear() {
+    size = 0;
+  }
+
+  /** @return the number of bytes used by the list */
+  long getMemoryBytes() {
+    return 4L * data.length;
+  }
+}
@@ -0,0 +1,280 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Works out, from the compiled permutations alone, which move sequences are redundant and so can
+ * be skipped by searches, scramblers and dataset generators. Moves are numbered in name order.
+ *
+ * <p>A move is skipped after the previous one when:
+ *
+ * <ul>
+ *   <li>it undoes the previous move (R then R');
+ *   <li>the two together are the same as a single move costing no more (R then R is R2);
+ *   <li>it commutes with the previous move but comes earlier in the numbering, so only one of R
+ *       L and L R is tried;
+ *   <li>it would make three of the same move in a row, and the three are the same as a single
+ *       move costing no more (R R R is R').
+ * </ul>
+ *
+ * Moves that change nothing, or that repeat an earlier move for the same or lower cost, are never
+ * used. Each rule turns a sequence into a shorter one, or the same length one with the moves in a
+ * lower order, for no more cost, so at least one lowest cost sequence for every position is kept.
+ */
+public class MovePruning {
+
+  /** Use as the previous move at the start of a sequence. */
+  public static final int NONE = -1;
+
+  private final String[] names;
+  private final int[] costs;
+  private final int[] inverse;
+  private final boolean[][] commutes;
+  // the single move equal to a then b, or NONE
+  private final int[][] product;
+  // true if the move is never worth using
+  private final boolean[] unused;
+  // allowed[a] has a bit set for each move that may follow a, the last entry is for NONE
+  private final long[][] allowed;
+  // moves that may not follow two of the same move
+  private final long[][] afterRepeat;
+
+  /**
+   * Analyse the compiled moves of a puzzle.
+   *
+   * @param puzzle the puzzle, this must have been compiled
+   */
+  public MovePruning(Puzzle puzzle) {
+    this(new TreeMap<>(puzzle.getCompiledMoves()));
+  }
+
+  /**
+   * Analyse a set of moves.
+   *
+   * @param moves the moves by name, they are numbered in the map's order
+   */
+  public MovePruning(Map<String, CompiledMove> moves) {
+    int count = moves.size();
+    names = moves.keySet().toArray(new String[0]);
+    CompiledMove[] compiled = moves.values().toArray(new CompiledMove[0]);
+    costs = new int[count];
+    // look moves up by their permutation
+    Map<String, Integer> byPermutation = new HashMap<>();
+    unused = new boolean[count];
+    for (int m = 0; m < count; m++) {
+      costs[m] = compiled[m].getCost();
+      String key = key(compiled[m]);
+      Integer same = byPermutation.get(key);
+      if (compiled[m].isIdentity()) {
+        unused[m] = true;
+      } else if (same == null || costs[m] < costs[same]) {
+        if (same != null) {
+          unused[same] = true;
+        }
+        byPermutation.put(key, m);
+      } else {
+        unused[m] = true;
+      }
+    }
+    inverse = new int[count];
+    commutes = new boolean[count][count];
+    product = new int[count][count];
+    for (int a = 0; a < count; a++) {
+      Integer inv = byPermutation.get(key(compiled[a].inverse()));
+      inverse[a] = inv == null ? NONE : inv;
+      for (int b = 0; b < count; b++) {
+        CompiledMove ab = compiled[a].then(compiled[b]);
+        commutes[a][b] = ab.isSamePermutation(compiled[b].then(compiled[a]));
+        Integer single = byPermutation.get(key(ab));
+        product[a][b] = single == null ? NONE : single;
+      }
+    }
+    int words = (count + 63) >>> 6;
+    allowed = new long[count + 1][words];
+    afterRepeat = new long[count][words];
+    for (int b = 0; b < count; b++) {
+      if (!unused[b]) {
+        set(allowed[count], b);
+      }
+    }
+    for (int a = 0; a < count; a++) {
+      CompiledMove twice = compiled[a].then(compiled[a]);
+      for (int b = 0; b < count; b++) {
+        if (!unused[b] && !redundant(a, b, compiled)) {
+          set(allowed[a], b);
+        }
+      }
+      // three in a row that a single move can replace
+      Integer single = byPermutation.get(key(twice.then(compiled[a])));
+      boolean tripleRedundant =
+          twice.then(compiled[a]).isIdentity()
+              || (single != null && costs[single] <= 3 * costs[a]);
+      if (tripleRedundant) {
+        set(afterRepeat[a], a);
+      }
+    }
+  }
+
+  private boolean redundant(int a, int b, CompiledMove[] compiled) {
+    CompiledMove ab = compiled[a].then(compiled[b]);
+    if (ab.isIdentity()) {
+      return true;
+    }
+    int single = product[a][b];
+    if (single != NONE && costs[single] <= costs[a] + costs[b]) {
+      return true;
+    }
+    return commutes[a][b] && b < a;
+  }
+
+  private static String key(CompiledMove move) {
+    int[] matrix = new int[move.getCardinality()];
+    for (int i = 0; i < matrix.length; i++) {
+      matrix[i] = move.getMatrixElement(i);
+    }
+    return Arrays.toString(matrix);
+  }
+
+  private static void set(long[] bits, int index) {
+    bits[index >>> 6] |= 1L << index;
+  }
+
+  private static boolean get(long[] bits, int index) {
+    return (bits[index >>> 6] & (1L << index)) != 0;
+  }
+
+  /** @return the number of moves */
+  public int getMoveCount() {
+    return names.length;
+  }
+
+  /**
+   * @param move the move number
+   * @return the name of the move
+   */
+  public String getName(int move) {
+    return names[move];
+  }
+
+  /**
+   * @param name the name of a move
+   * @return the move number, or {@link #NONE} if there is no such move
+   */
+  public int indexOf(String name) {
+    int index = Arrays.asList(names).indexOf(name);
+    return index < 0 ? NONE : index;
+  }
+
+  /**
+   * @param move the move number
+   * @return the move that undoes it, or {@link #NONE}
+   */
+  public int getInverse(int move) {
+    return inverse[move];
+  }
+
+  /**
+   * @param a a move number
+   * @param b another move number
+   * @return true if doing a then b is the same as b then a
+   */
+  public boolean commutes(int a, int b) {
+    return commutes[a][b];
+  }
+
+  /**
+   * @param a the first move
+   * @param b the move after it
+   * @return the single move that does the same as a then b, or {@link #NONE}
+   */
+  public int getProduct(int a, int b) {
+    return product[a][b];
+  }
+
+  /**
+   * The moves worth trying after a move, one bit per move number. The array is shared, so it must
+   * not be changed.
+   *
+   * @param last the previous move, or {@link #NONE} at the start
+   * @return the successor mask
+   */
+  public long[] getSuccessorMask(int last) {
+    return allowed[last == NONE ? names.length : last];
+  }
+
+  /**
+   * Check if a move is worth trying.
+   *
+   * @param last the previous move, or {@link #NONE}
+   * @param next the move to try
+   * @return false if the sequence is redundant
+   */
+  public boolean isAllowed(int last, int next) {
+    return get(getSuccessorMask(last), next);
+  }
+
+  /**
+   * Check if a move is worth trying, also looking for three of the same move in a row.
+   *
+   * @param secondLast the move before the previous one, or {@link #NONE}
+   * @param last the previous move, or {@link #NONE}
+   * @param next the move to try
+   * @return false if the sequence is redundant
+   */
+  public boolean isAllowed(int secondLast, int last, int next) {
+    if (!isAllowed(last, next)) {
+      return false;
+    }
+    return !(secondLast != NONE && secondLast == last && get(afterRepeat[last], next));
+  }
+
+  /** @return a readable table of the analysis, one line per move */
+  public String describe() {
+    StringBuilder result = new StringBuilder();
+    for (int a = 0; a < names.length; a++) {
+      result.append(names[a]).append(" (cost ").append(costs[a]).append(")");
+      if (unused[a]) {
+        result.append(" never used\n");
+        continue;
+      }
+      result.append(" inverse ").append(inverse[a] == NONE ? "-" : names[inverse[a]]);
+      List<String> commuting = new ArrayList<>();
+      List<String> following = new ArrayList<>();
+      for (int b = 0; b < names.length; b++) {
+        if (b != a && commutes[a][b]) {
+          commuting.add(names[b]);
+        }
+        if (isAllowed(a, b)) {
+          following.add(names[b]);
+        }
+      }
+      result.append(", commutes with ").append(String.join(" ", commuting));
+      result.append(", followed by ").append(String.join(" ", following)).append('\n');
+    }
+    return result.toString();
+  }
+
+  /**
+   * Print the analysis of a puzzle file.
+   *
+   * @param args the .tp file
+   */
+  public static void main(String[] args) {
+    if (args.length < 1) {
+      System.err.println("Usage: MovePruning <puzzle.tp>");
+      System.exit(1);
+    }
+    Puzzle puzzle = (Puzzle) PuzzleUtil.getCodec().fromXML(new File(args[0]));
+    puzzle.compileMoves();
+    System.out.print(new MovePruning(puzzle).describe());
+  }
+}
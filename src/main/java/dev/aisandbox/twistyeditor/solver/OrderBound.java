@@ -0,0 +1,363 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import java.math.BigInteger;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * An upper bound on the order of a permutation group with more than one orbit, worked out one
+ * orbit at a time. A stabiliser chain gives a lower bound, so when the two agree the chain is
+ * complete without sifting every Schreier generator.
+ *
+ * <p>If K is the subgroup fixing every point of the orbits already seen, the order is the product
+ * over the orbits of the size of K acting on the next orbit. That is at most the order of the whole
+ * group acting on the orbit, which is small enough to find exactly, either with its own stabiliser
+ * chain or, when it has no blocks and a prime cycle, as the symmetric or alternating group. It is
+ * cut down two ways:
+ *
+ * <ul>
+ *   <li>if the image of a point of the orbit depends only on the image of one earlier point, K
+ *       can't move the orbit at all, like the two stickers of a cube edge piece;
+ *   <li>any parity, of the orbit or of a block system on it like the pieces of a puzzle, that is a
+ *       combination of earlier parities is even on K, like edge and corner parity on a cube. Each
+ *       independent one of those halves the bound.
+ * </ul>
+ */
+final class OrderBound {
+
+  // products of the generators to try when looking for a prime cycle
+  private static final int PRIME_CYCLE_TRIES = 100;
+
+  private OrderBound() {}
+
+  /**
+   * Bound the order of a group.
+   *
+   * @param degree the number of points
+   * @param generators the generating permutations, each of the given degree
+   * @return an upper bound on the order, or null if fewer than two orbits have more than one point
+   */
+  static BigInteger of(int degree, List<int[]> generators) {
+    List<int[]> orbits = orbits(degree, generators);
+    if (orbits.size() < 2) {
+      return null;
+    }
+    BigInteger bound = BigInteger.ONE;
+    // the parities seen so far, reduced so each has a different highest generator
+    List<BitSet> earlier = new ArrayList<>();
+    List<Integer> earlierPoints = new ArrayList<>();
+    for (int[] orbit : orbits) {
+      List<int[]> restricted = restrict(degree, orbit, generators);
+      List<int[]> distinct = distinct(restricted);
+      List<BitSet> parities = new ArrayList<>();
+      parities.add(parity(restricted, null));
+      Set<IntBuffer> systems = new HashSet<>();
+      for (int point = 1; point < orbit.length; point++) {
+        int[] blocks = blocks(orbit.length, distinct, point);
+        if (blocks != null && systems.add(IntBuffer.wrap(blocks))) {
+          parities.add(parity(restricted, blocks));
+        }
+      }
+      // the parities of this orbit that are independent, and how many of those are new
+      int rank = reduce(new ArrayList<>(), parities);
+      int added = reduce(earlier, parities);
+      if (!tied(degree, generators, earlierPoints, orbit[0])) {
+        BigInteger order =
+            systems.isEmpty() && hasPrimeCycle(distinct)
+                ? symmetricOrder(orbit.length, parities.get(0).isEmpty())
+                : new PermutationGroup(orbit.length, distinct).getOrder();
+        bound = bound.multiply(order).shiftRight(rank - added);
+      }
+      for (int point : orbit) {
+        earlierPoints.add(point);
+      }
+    }
+    return bound;
+  }
+
+  /** @return the orbits with more than one point, each in increasing order */
+  private static List<int[]> orbits(int degree, List<int[]> generators) {
+    int[] parent = new int[degree];
+    for (int p = 0; p < degree; p++) {
+      parent[p] = p;
+    }
+    for (int[] generator : generators) {
+      for (int p = 0; p < degree; p++) {
+        union(parent, p, generator[p]);
+      }
+    }
+    int[] sizes = new int[degree];
+    for (int p = 0; p < degree; p++) {
+      sizes[find(parent, p)]++;
+    }
+    List<int[]> orbits = new ArrayList<>();
+    int[] filled = new int[degree];
+    int[][] byRoot = new int[degree][];
+    for (int p = 0; p < degree; p++) {
+      int root = find(parent, p);
+      if (sizes[root] > 1) {
+        if (byRoot[root] == null) {
+          byRoot[root] = new int[sizes[root]];
+          orbits.add(byRoot[root]);
+        }
+        byRoot[root][filled[root]++] = p;
+      }
+    }
+    return orbits;
+  }
+
+  /** @return each generator acting on the orbit, with its points numbered from 0 */
+  private static List<int[]> restrict(int degree, int[] orbit, List<int[]> generators) {
+    int[] index = new int[degree];
+    for (int i = 0; i < orbit.length; i++) {
+      index[orbit[i]] = i;
+    }
+    List<int[]> restricted = new ArrayList<>();
+    for (int[] generator : generators) {
+      int[] g = new int[orbit.length];
+      for (int i = 0; i < orbit.length; i++) {
+        g[i] = index[generator[orbit[i]]];
+      }
+      restricted.add(g);
+    }
+    return restricted;
+  }
+
+  private static List<int[]> distinct(List<int[]> generators) {
+    // IntBuffer compares by content
+    Set<IntBuffer> seen = new HashSet<>();
+    List<int[]> distinct = new ArrayList<>();
+    for (int[] g : generators) {
+      if (seen.add(IntBuffer.wrap(g))) {
+        distinct.add(g);
+      }
+    }
+    return distinct;
+  }
+
+  /**
+   * Look for a cycle of prime length p, with p at most three less than the number of points, among
+   * the generators and a fixed walk of their products. By Jordan's theorem a primitive group with
+   * one is the alternating or symmetric group. An element with exactly one cycle of length p and
+   * no other cycle length divisible by p has a power that is that cycle alone.
+   */
+  private static boolean hasPrimeCycle(List<int[]> generators) {
+    int size = generators.get(0).length;
+    Random random = new Random(0);
+    int[] element = generators.get(0);
+    for (int i = 0; i < generators.size() + PRIME_CYCLE_TRIES; i++) {
+      if (i < generators.size()) {
+        element = generators.get(i);
+      } else {
+        int[] g = generators.get(random.nextInt(generators.size()));
+        int[] product = new int[size];
+        for (int p = 0; p < size; p++) {
+          product[p] = g[element[p]];
+        }
+        element = product;
+      }
+      int[] cycles = new int[size + 1];
+      boolean[] seen = new boolean[size];
+      for (int p = 0; p < size; p++) {
+        int length = 0;
+        for (int q = p; !seen[q]; q = element[q]) {
+          seen[q] = true;
+          length++;
+        }
+        cycles[length]++;
+      }
+      for (int prime = 2; prime <= size - 3; prime++) {
+        if (cycles[prime] == 1 && isPrime(prime)) {
+          boolean alone = true;
+          for (int length = 2 * prime; length <= size; length += prime) {
+            alone &= cycles[length] == 0;
+          }
+          if (alone) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isPrime(int n) {
+    for (int d = 2; d * d <= n; d++) {
+      if (n % d == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** @return the order of the symmetric group, or the alternating group if every element is even */
+  private static BigInteger symmetricOrder(int size, boolean even) {
+    BigInteger order = BigInteger.ONE;
+    for (int i = even ? 3 : 2; i <= size; i++) {
+      order = order.multiply(BigInteger.valueOf(i));
+    }
+    return order;
+  }
+
+  /**
+   * Check if the image of a point is fixed by the image of some earlier point, that is if the
+   * images of the pair under the group are a function of the first.
+   */
+  private static boolean tied(
+      int degree, List<int[]> generators, List<Integer> earlierPoints, int point) {
+    int[] image = new int[degree];
+    int[] queue = new int[degree];
+    for (int earlier : earlierPoints) {
+      Arrays.fill(image, -1);
+      image[earlier] = point;
+      queue[0] = earlier;
+      int head = 0;
+      int tail = 1;
+      boolean function = true;
+      while (function && head < tail) {
+        int p = queue[head++];
+        for (int[] g : generators) {
+          int known = image[g[p]];
+          if (known < 0) {
+            image[g[p]] = g[image[p]];
+            queue[tail++] = g[p];
+          } else if (known != g[image[p]]) {
+            function = false;
+            break;
+          }
+        }
+      }
+      if (function) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Find the smallest block system with point 0 and the given point in the same block.
+   *
+   * @return the block of each point, or null if every point is in one block
+   */
+  private static int[] blocks(int size, List<int[]> generators, int point) {
+    int[] parent = new int[size];
+    for (int p = 0; p < size; p++) {
+      parent[p] = p;
+    }
+    // pairs that were merged, whose images must be merged too, there are at most size - 1
+    int[] pending = new int[2 * size];
+    union(parent, 0, point);
+    pending[0] = 0;
+    pending[1] = point;
+    int merged = 1;
+    int top = 2;
+    while (top > 0) {
+      int b = pending[--top];
+      int a = pending[--top];
+      for (int[] g : generators) {
+        if (union(parent, g[a], g[b])) {
+          if (++merged == size - 1) {
+            return null;
+          }
+          pending[top++] = g[a];
+          pending[top++] = g[b];
+        }
+      }
+    }
+    int[] block = new int[size];
+    int[] numbers = new int[size];
+    Arrays.fill(numbers, -1);
+    int count = 0;
+    for (int p = 0; p < size; p++) {
+      int root = find(parent, p);
+      if (numbers[root] < 0) {
+        numbers[root] = count++;
+      }
+      block[p] = numbers[root];
+    }
+    return count == 1 ? null : block;
+  }
+
+  /**
+   * @param blocks the block of each point, or null for the points themselves
+   * @return the generators that are odd permutations of the points or blocks
+   */
+  private static BitSet parity(List<int[]> generators, int[] blocks) {
+    BitSet odd = new BitSet(generators.size());
+    int count = blocks == null ? 0 : Arrays.stream(blocks).max().getAsInt() + 1;
+    for (int s = 0; s < generators.size(); s++) {
+      int[] g = generators.get(s);
+      if (blocks != null) {
+        int[] onBlocks = new int[count];
+        for (int p = 0; p < g.length; p++) {
+          onBlocks[blocks[p]] = blocks[g[p]];
+        }
+        g = onBlocks;
+      }
+      boolean[] seen = new boolean[g.length];
+      int transpositions = 0;
+      for (int p = 0; p < g.length; p++) {
+        for (int q = g[p]; !seen[p] && q != p; q = g[q]) {
+          seen[q] = true;
+          transpositions++;
+        }
+        seen[p] = true;
+      }
+      odd.set(s, transpositions % 2 == 1);
+    }
+    return odd;
+  }
+
+  /**
+   * Add parities to a reduced basis, keeping those that aren't combinations of the rest.
+   *
+   * @return how many were added
+   */
+  private static int reduce(List<BitSet> basis, List<BitSet> parities) {
+    int added = 0;
+    for (BitSet parity : parities) {
+      BitSet reduced = (BitSet) parity.clone();
+      for (BitSet vector : basis) {
+        if (reduced.get(vector.length() - 1)) {
+          reduced.xor(vector);
+        }
+      }
+      if (!reduced.isEmpty()) {
+        // keep the basis ordered by highest bit, so one pass reduces anything
+        int position = 0;
+        while (position < basis.size()
+            && basis.get(position).length() > reduced.length()) {
+          position++;
+        }
+        basis.add(position, reduced);
+        added++;
+      }
+    }
+    return added;
+  }
+
+  private static int find(int[] parent, int p) {
+    while (parent[p] != p) {
+      parent[p] = parent[parent[p]];
+      p = parent[p];
+    }
+    return p;
+  }
+
+  /** @return true if the two points were in different sets */
+  private static boolean union(int[] parent, int a, int b) {
+    a = find(parent, a);
+    b = find(parent, b);
+    if (a == b) {
+      return false;
+    }
+    parent[Math.max(a, b)] = Math.min(a, b);
+    return true;
+  }
+}
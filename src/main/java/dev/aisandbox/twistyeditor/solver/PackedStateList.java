@@ -0,0 +1,60 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import java.util.Arrays;
+import lombok.Getter;
+
+/** A growable list of packed states, stored back to back in one long[]. */
+public class PackedStateList {
+
+  @Getter private final int wordCount;
+  @Getter private int size = 0;
+  private long[] words;
+
+  /**
+   * Create an empty list.
+   *
+   * @param wordCount the number of longs in each state
+   */
+  public PackedStateList(int wordCount) {
+    this.wordCount = wordCount;
+    words = new long[wordCount * 16];
+  }
+
+  /**
+   * Add a state to the end of the list.
+   *
+   * @param src the array holding the state
+   * @param offset the first word of the state
+   */
+  public void add(long[] src, int offset) {
+    int end = size * wordCount;
+    if (end + wordCount > words.length) {
+      if (words.length >= Integer.MAX_VALUE / 2) {
+        throw new IllegalStateException("Too many states for the list");
+      }
+      words = Arrays.copyOf(words, words.length * 2);
+    }
+    System.arraycopy(src, offset, words, end, wordCount);
+    size++;
+  }
+
+  /**
+   * The underlying array, state i starts at <code>i * wordCount</code>. This is replaced as the
+   * list grows so it shouldn't be kept.
+   *
+   * @return the words
+   */
+  public long[] getWords() {
+    return words;
+  }
+
+  /** Remove every state, keeping the allocated space. */
+  public void clear() {
+    size = 0;
+  }
+
+  /** @return the number of bytes used by the list */
+  public long getMemoryBytes() {
+    return 8L * words.length;
+  }
+}
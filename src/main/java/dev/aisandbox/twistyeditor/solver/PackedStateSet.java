@@ -0,0 +1,116 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import dev.aisandbox.twistyeditor.model.PackedState;
+import lombok.Getter;
+
+/**
+ * A hash set of packed states, using open addressing with linear probing over one flat long[].
+ * Each slot holds the words of one state, and a separate bitmap marks which slots are in use (the
+ * all zero state is a valid state, so it can't be used to mark an empty slot).
+ *
+ * <p>Not thread safe.
+ */
+public class PackedStateSet {
+
+  /** The set grows once more than this fraction of the slots are in use. */
+  public static final double MAX_LOAD = 0.6;
+
+  @Getter private final int wordCount;
+  @Getter private int size = 0;
+  private int capacity;
+  private long[] table;
+  private long[] used;
+
+  /**
+   * Create an empty set.
+   *
+   * @param wordCount the number of longs in each state, see {@link PackedState#wordCount(int)}
+   * @param expected the number of states expected, to size the table
+   */
+  public PackedStateSet(int wordCount, int expected) {
+    this.wordCount = wordCount;
+    int slots = 16;
+    while (slots * MAX_LOAD < expected) {
+      slots <<= 1;
+    }
+    allocate(slots);
+  }
+
+  private void allocate(int slots) {
+    capacity = slots;
+    table = new long[Math.multiplyExact(slots, wordCount)];
+    used = new long[(slots + 63) >>> 6];
+  }
+
+  /**
+   * Add a state.
+   *
+   * @param src the array holding the state
+   * @param offset the first word of the state
+   * @return true if the state wasn't already in the set
+   */
+  public boolean add(long[] src, int offset) {
+    if (size >= capacity * MAX_LOAD) {
+      grow();
+    }
+    int slot = find(src, offset);
+    if (slot >= 0) {
+      return false;
+    }
+    slot = -slot - 1;
+    System.arraycopy(src, offset, table, slot * wordCount, wordCount);
+    used[slot >>> 6] |= 1L << slot;
+    size++;
+    return true;
+  }
+
+  /**
+   * Check for a state.
+   *
+   * @param src the array holding the state
+   * @param offset the first word of the state
+   * @return true if the state is in the set
+   */
+  public boolean contains(long[] src, int offset) {
+    return find(src, offset) >= 0;
+  }
+
+  /** @return the number of bytes used by the table */
+  public long getMemoryBytes() {
+    return 8L * (table.length + used.length);
+  }
+
+  /**
+   * Find the slot holding a state.
+   *
+   * @return the slot if found, otherwise -(empty slot) - 1
+   */
+  private int find(long[] src, int offset) {
+    int mask = capacity - 1;
+    int slot = (int) PackedState.hash(src, offset, wordCount) & mask;
+    while ((used[slot >>> 6] & (1L << slot)) != 0) {
+      if (PackedState.equals(table, slot * wordCount, src, offset, wordCount)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -slot - 1;
+  }
+
+  private void grow() {
+    if (capacity >= 1 << 30) {
+      throw new IllegalStateException("Too many states for the set");
+    }
+    long[] oldTable = table;
+    long[] oldUsed = used;
+    int oldCapacity = capacity;
+    allocate(capacity << 1);
+    for (int slot = 0; slot < oldCapacity; slot++) {
+      if ((oldUsed[slot >>> 6] & (1L << slot)) != 0) {
+        int target = -find(oldTable, slot * wordCount) - 1;
+        System.arraycopy(oldTable, slot * wordCount, table, target * wordCount, wordCount);
+        used[target >>> 6] |= 1L << target;
+      }
+    }
+  }
+}
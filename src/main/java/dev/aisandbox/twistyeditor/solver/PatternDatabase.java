@@ -0,0 +1,256 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A table of the lowest cost needed to bring a few tracked stickers back to cells of their own
+ * colour, for every place those stickers could be. As the tracked stickers can't be solved for
+ * less than the whole puzzle, this never overestimates and can be used as an IDA* heuristic.
+ *
+ * <p>The stickers are tracked by their original cell, and the table is indexed by the cells they
+ * are in now, as <code>p(0) + p(1) * n + p(2) * n^2 ...</code> for a puzzle of n cells. Values are
+ * packed two to a byte, so anything costing {@link #MAX_VALUE} or more is stored as {@link
+ * #MAX_VALUE}. The table can be saved and then loaded by memory mapping the file.
+ */
+@Slf4j
+public class PatternDatabase {
+
+  /** The largest value stored, higher costs are capped to this. */
+  public static final int MAX_VALUE = 15;
+
+  // "TPDB"
+  private static final int MAGIC = 0x54504442;
+  private static final int VERSION = 1;
+
+  @Getter private final int cardinality;
+  private final int[] tracked;
+  @Getter private final long entryCount;
+  // two values per byte, the lower nibble holds the even index
+  private final ByteBuffer values;
+
+  private PatternDatabase(int cardinality, int[] tracked, ByteBuffer values) {
+    this.cardinality = cardinality;
+    this.tracked = tracked;
+    this.entryCount = entryCount(cardinality, tracked.length);
+    this.values = values;
+  }
+
+  /**
+   * Work out the cost of every placement of the tracked stickers, by searching back from the
+   * placements where every tracked sticker is on a cell of its own colour. The search uses a
+   * bucket per cost, as costs are small integers and may be zero.
+   *
+   * @param puzzle the puzzle, this must have been compiled
+   * @param trackedCells the cells whose stickers are tracked
+   * @return the pattern database
+   */
+  public static PatternDatabase build(Puzzle puzzle, int... trackedCells) {
+    long start = System.nanoTime();
+    byte[] colours = puzzle.getInitialState();
+    int n = colours.length;
+    int k = trackedCells.length;
+    long entries = entryCount(n, k);
+    if (entries > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          "Tracking " + k + " of " + n + " cells needs too big a table (" + entries + ")");
+    }
+    List<CompiledMove> moves = new ArrayList<>(puzzle.getCompiledMoves().values());
+    // a sticker in cell p came from cell matrix[p] before the move
+    int[][] before = new int[moves.size()][n];
+    int[] costs = new int[moves.size()];
+    for (int m = 0; m < moves.size(); m++) {
+      for (int p = 0; p < n; p++) {
+        before[m][p] = moves.get(m).getMatrixElement(p);
+      }
+      costs[m] = moves.get(m).getCost();
+    }
+    byte[] table = new byte[(int) ((entries + 1) / 2)];
+    Arrays.fill(table, (byte) 0xFF);
+    IntList[] buckets = new IntList[MAX_VALUE];
+    for (int d = 0; d < MAX_VALUE; d++) {
+      buckets[d] = new IntList();
+    }
+    addGoals(colours, trackedCells, new int[k], 0, table, buckets[0]);
+    int[] tuple = new int[k];
+    for (int d = 0; d < MAX_VALUE; d++) {
+      IntList bucket = buckets[d];
+      // zero cost moves add to the bucket being worked through
+      for (int i = 0; i < bucket.size(); i++) {
+        int index = bucket.get(i);
+        if (get(table, index) != d) {
+          // already found at a lower cost
+          continue;
+        }
+        decode(index, n, tuple);
+        for (int m = 0; m < before.length; m++) {
+          int cost = d + costs[m];
+          if (cost >= MAX_VALUE) {
+            continue;
+          }
+          int previous = 0;
+          for (int j = k - 1; j >= 0; j--) {
+            previous = previous * n + before[m][tuple[j]];
+          }
+          if (cost < get(table, previous)) {
+            set(table, previous, cost);
+            buckets[cost].add(previous);
+          }
+        }
+      }
+      buckets[d] = null;
+    }
+    log.info(
+        "Built a pattern database of {} entries for cells {} in {}ms",
+        entries,
+        Arrays.toString(trackedCells),
+        (System.nanoTime() - start) / 1000000);
+    return new PatternDatabase(n, trackedCells.clone(), ByteBuffer.wrap(table));
+  }
+
+  /** Add every placement with each tracked sticker on a cell of its own colour. */
+  private static void addGoals(
+      byte[] colours, int[] tracked, int[] tuple, int j, byte[] table, IntList goals) {
+    if (j == tracked.length) {
+      int index = encode(tuple, colours.length);
+      if (get(table, index) != 0) {
+        set(table, index, 0);
+        goals.add(index);
+      }
+      return;
+    }
+    for (int p = 0; p < colours.length; p++) {
+      if (colours[p] == colours[tracked[j]] && !contains(tuple, j, p)) {
+        tuple[j] = p;
+        addGoals(colours, tracked, tuple, j + 1, table, goals);
+      }
+    }
+  }
+
+  private static boolean contains(int[] tuple, int length, int value) {
+    for (int i = 0; i < length; i++) {
+      if (tuple[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long entryCount(int n, int k) {
+    long entries = 1;
+    for (int i = 0; i < k; i++) {
+      entries = Math.multiplyExact(entries, n);
+    }
+    return entries;
+  }
+
+  private static int encode(int[] tuple, int n) {
+    int index = 0;
+    for (int j = tuple.length - 1; j >= 0; j--) {
+      index = index * n + tuple[j];
+    }
+    return index;
+  }
+
+  private static void decode(int index, int n, int[] tuple) {
+    for (int j = 0; j < tuple.length; j++) {
+      tuple[j] = index % n;
+      index /= n;
+    }
+  }
+
+  private static int get(byte[] table, int index) {
+    return (table[index >>> 1] >>> ((index & 1) << 2)) & 0xF;
+  }
+
+  private static void set(byte[] table, int index, int value) {
+    int shift = (index & 1) << 2;
+    table[index >>> 1] = (byte) ((table[index >>> 1] & ~(0xF << shift)) | (value << shift));
+  }
+
+  /** @return the cells whose stickers are tracked */
+  public int[] getTrackedCells() {
+    return tracked.clone();
+  }
+
+  /**
+   * Look up the cost for a placement of the tracked stickers.
+   *
+   * @param where the cell each sticker is now in, indexed by the sticker's original cell
+   * @return a lower bound on the cost of solving the puzzle, capped at {@link #MAX_VALUE}
+   */
+  public int lookup(int[] where) {
+    long index = 0;
+    for (int j = tracked.length - 1; j >= 0; j--) {
+      index = index * cardinality + where[tracked[j]];
+    }
+    return (values.get((int) (index >>> 1)) >>> ((index & 1) << 2)) & 0xF;
+  }
+
+  /**
+   * Save the table, with a header giving the tracked cells.
+   *
+   * @param file the file to write
+   * @throws IOException if the file can't be written
+   */
+  public void save(Path file) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(16 + 4 * tracked.length);
+    header.putInt(MAGIC).putInt(VERSION).putInt(cardinality).putInt(tracked.length);
+    for (int cell : tracked) {
+      header.putInt(cell);
+    }
+    header.flip();
+    ByteBuffer body = values.duplicate();
+    body.clear();
+    try (FileChannel channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+      while (body.hasRemaining()) {
+        channel.write(body);
+      }
+    }
+  }
+
+  /**
+   * Load a saved table by mapping the file into memory, so only the parts used are read.
+   *
+   * @param file the file to read
+   * @return the pattern database
+   * @throws IOException if the file can't be read, or isn't a pattern database
+   */
+  public static PatternDatabase load(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION) {
+        throw new IOException(file + " isn't a version " + VERSION + " pattern database");
+      }
+      int cardinality = mapped.getInt();
+      int[] tracked = new int[mapped.getInt()];
+      for (int j = 0; j < tracked.length; j++) {
+        tracked[j] = mapped.getInt();
+      }
+      ByteBuffer values = mapped.slice();
+      long expected = (entryCount(cardinality, tracked.length) + 1) / 2;
+      if (values.remaining() != expected) {
+        throw new IOException(file + " is the wrong size for its pattern database");
+      }
+      return new PatternDatabase(cardinality, tracked, values);
+    }
+  }
+}
@@ -0,0 +1,360 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The group generated by a set of permutations, held as a stabiliser chain built with the
+ * randomised Schreier-Sims algorithm. Permutations are int arrays, where point i goes to p[i].
+ *
+ * <p>Random group elements are sifted through the chain, and any that don't reduce to the identity
+ * are added as new strong generators, until {@link #DEFAULT_CONFIRMATIONS} random elements in a row
+ * sift to the identity. That makes an incomplete chain unlikely but not impossible, so the chain is
+ * then checked, and the random phase runs again if the check finds an element that doesn't sift.
+ * The order is exact.
+ *
+ * <p>Every strong generator is in the group, so the chain's order can't be too big. With more than
+ * one orbit, {@link OrderBound} gives an upper bound, and if the two agree the chain is complete.
+ * That covers most puzzles, for which sifting every Schreier generator would take minutes. When
+ * they don't agree every Schreier generator is sifted.
+ */
+public class PermutationGroup {
+
+  /** Random elements that must sift to the identity in a row before the chain is checked. */
+  public static final int DEFAULT_CONFIRMATIONS = 40;
+
+  // transversals are stored as chars, which halves the memory each sift reads
+  private static final int MAX_DEGREE = Character.MAX_VALUE + 1;
+
+  // elements kept for the product replacement random walk
+  private static final int POOL_SIZE = 10;
+  private static final int WARM_UP = 50;
+
+  private final int degree;
+  private final List<Level> levels = new ArrayList<>();
+  private final Random random;
+  private final int[][] pool;
+  private int[] accumulator;
+
+  /**
+   * Build the chain for a group.
+   *
+   * @param degree the number of points, at most 65536
+   * @param generators the generating permutations, each of the given degree
+   */
+  public PermutationGroup(int degree, List<int[]> generators) {
+    this(degree, generators, DEFAULT_CONFIRMATIONS, new Random(0));
+  }
+
+  /**
+   * Build the chain for a group.
+   *
+   * @param degree the number of points, at most 65536
+   * @param generators the generating permutations, each of the given degree
+   * @param confirmations random elements that must sift to the identity in a row
+   * @param random the source of randomness
+   */
+  public PermutationGroup(int degree, List<int[]> generators, int confirmations, Random random) {
+    if (degree > MAX_DEGREE) {
+      throw new IllegalArgumentException("Degree " + degree + " is more than " + MAX_DEGREE);
+    }
+    this.degree = degree;
+    this.random = random;
+    List<int[]> moving = new ArrayList<>();
+    for (int[] generator : generators) {
+      if (generator.length != degree) {
+        throw new IllegalArgumentException("Generator has degree " + generator.length);
+      }
+      if (!isIdentity(generator)) {
+        moving.add(generator);
+      }
+    }
+    if (moving.isEmpty()) {
+      pool = new int[0][];
+      return;
+    }
+    pool = new int[Math.max(POOL_SIZE, moving.size())][];
+    for (int i = 0; i < pool.length; i++) {
+      pool[i] = moving.get(i % moving.size()).clone();
+    }
+    accumulator = identity(degree);
+    for (int i = 0; i < WARM_UP; i++) {
+      randomElement();
+    }
+    // the generators go in first, so the chain is right for small groups straight away
+    for (int[] generator : moving) {
+      addIfNew(generator);
+    }
+    do {
+      int sifted = 0;
+      while (sifted < confirmations) {
+        sifted = addIfNew(randomElement()) ? 0 : sifted + 1;
+      }
+    } while (!isComplete(moving));
+  }
+
+  /** @return true if the chain is complete, otherwise an element that didn't sift has been added */
+  private boolean isComplete(List<int[]> generators) {
+    return getOrder().equals(OrderBound.of(degree, generators)) || verify(generators);
+  }
+
+  /**
+   * Check the chain is complete, adding the first element found that doesn't sift if it isn't.
+   * The strong generators are cut down first, then by Schreier's lemma the stabiliser at each
+   * level is generated by u_p s u_(s(p))^-1, for each point p in the orbit and generator s of the
+   * level, so if all of those sift through the levels below the chain describes the group it was
+   * built from. The original generators are sifted last, to show that group is the whole group.
+   *
+   * @return true if the chain is complete
+   */
+  private boolean verify(List<int[]> generators) {
+    prune();
+    for (int l = levels.size() - 1; l >= 0; l--) {
+      Level level = levels.get(l);
+      for (int i = 0; i < level.orbitSize; i++) {
+        int[] rep = invert(level.inverse(level.orbit[i]));
+        for (int s = 0; s < level.generators.size(); s++) {
+          int[] step = compose(rep, level.generators.get(s));
+          // divide out the representative for where the base point ends up, so it's fixed
+          int[] schreier = compose(step, level.inverse(step[level.base]));
+          if (addIfNew(schreier)) {
+            return false;
+          }
+        }
+      }
+    }
+    for (int[] generator : generators) {
+      if (addIfNew(generator)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Rebuild each level from the bottom up with only the generators of the level below, and as
+   * few of its own as it takes to reach the same orbit. This keeps the same orbits, so the same
+   * order, with far fewer Schreier generators to check.
+   */
+  private void prune() {
+    List<int[]> kept = new ArrayList<>();
+    List<int[]> keptInverses = new ArrayList<>();
+    for (int l = levels.size() - 1; l >= 0; l--) {
+      Level old = levels.get(l);
+      Level level = new Level(old.base, degree);
+      for (int s = 0; s < kept.size(); s++) {
+        level.addGenerator(kept.get(s), keptInverses.get(s));
+      }
+      while (level.orbitSize < old.orbitSize) {
+        for (int s = 0; s < old.generators.size(); s++) {
+          int[] g = old.generators.get(s);
+          if (level.extendedBy(g)) {
+            level.addGenerator(g, old.inverseGenerators.get(s));
+            kept.add(g);
+            keptInverses.add(old.inverseGenerators.get(s));
+          }
+        }
+      }
+      levels.set(l, level);
+    }
+  }
+
+  /** @return the number of points the permutations act on */
+  public int getDegree() {
+    return degree;
+  }
+
+  /** @return the number of elements in the group */
+  public BigInteger getOrder() {
+    BigInteger order = BigInteger.ONE;
+    for (Level level : levels) {
+      order = order.multiply(BigInteger.valueOf(level.orbitSize));
+    }
+    return order;
+  }
+
+  /** @return the base points, fixing all of these fixes every point */
+  public int[] getBase() {
+    return levels.stream().mapToInt(level -> level.base).toArray();
+  }
+
+  /**
+   * Check if a permutation is in the group.
+   *
+   * @param permutation the permutation
+   * @return true if it sifts to the identity
+   */
+  public boolean contains(int[] permutation) {
+    int[] residue = permutation.clone();
+    return sift(residue) == levels.size() && isIdentity(residue);
+  }
+
+  /**
+   * Sift an element through the chain, dividing out coset representatives in place.
+   *
+   * @return the level where the image of the base point is outside the orbit, or the number of
+   *     levels if the element got through
+   */
+  private int sift(int[] g) {
+    for (int l = 0; l < levels.size(); l++) {
+      Level level = levels.get(l);
+      if (g[level.base] == level.base) {
+        // the representative is the identity
+        continue;
+      }
+      char[] inverse = level.inverseReps[g[level.base]];
+      if (inverse == null) {
+        return l;
+      }
+      // g = u^-1 g, which fixes the base point; each entry only needs its old value
+      for (int i = 0; i < degree; i++) {
+        g[i] = inverse[g[i]];
+      }
+    }
+    return levels.size();
+  }
+
+  /** Sift an element, and add what is left as a strong generator if it isn't the identity. */
+  private boolean addIfNew(int[] element) {
+    int[] g = element.clone();
+    int failed = sift(g);
+    if (failed == levels.size()) {
+      if (isIdentity(g)) {
+        return false;
+      }
+      for (int p = 0; p < degree; p++) {
+        if (g[p] != p) {
+          levels.add(new Level(p, degree));
+          break;
+        }
+      }
+    }
+    // g fixes the base points above the failed level, so it belongs to all of those stabilisers
+    int[] inverse = invert(g);
+    for (int l = 0; l <= failed; l++) {
+      levels.get(l).addGenerator(g, inverse);
+    }
+    return true;
+  }
+
+  /** The next element of a product replacement random walk. */
+  private int[] randomElement() {
+    int i = random.nextInt(pool.length);
+    int j = random.nextInt(pool.length - 1);
+    if (j >= i) {
+      j++;
+    }
+    pool[i] = random.nextBoolean() ? compose(pool[i], pool[j]) : compose(pool[j], pool[i]);
+    accumulator = compose(accumulator, pool[i]);
+    return accumulator;
+  }
+
+  /** @return a then b, so point p goes to b[a[p]] */
+  private static int[] compose(int[] a, int[] b) {
+    int[] result = new int[a.length];
+    for (int p = 0; p < a.length; p++) {
+      result[p] = b[a[p]];
+    }
+    return result;
+  }
+
+  private static int[] invert(int[] g) {
+    int[] inverse = new int[g.length];
+    for (int p = 0; p < g.length; p++) {
+      inverse[g[p]] = p;
+    }
+    return inverse;
+  }
+
+  private static int[] identity(int degree) {
+    int[] result = new int[degree];
+    for (int p = 0; p < degree; p++) {
+      result[p] = p;
+    }
+    return result;
+  }
+
+  private static boolean isIdentity(int[] g) {
+    for (int p = 0; p < g.length; p++) {
+      if (g[p] != p) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** One stabiliser in the chain, with the orbit of its base point and a transversal. */
+  private static class Level {
+    final int base;
+    final List<int[]> generators = new ArrayList<>();
+    final List<int[]> inverseGenerators = new ArrayList<>();
+    // for each point in the orbit, the inverse of an element taking the base point there
+    final char[][] inverseReps;
+    final int[] orbit;
+    int orbitSize;
+
+    Level(int base, int degree) {
+      this.base = base;
+      inverseReps = new char[degree][];
+      inverseReps[base] = new char[degree];
+      for (int p = 0; p < degree; p++) {
+        inverseReps[base][p] = (char) p;
+      }
+      orbit = new int[degree];
+      orbit[0] = base;
+      orbitSize = 1;
+    }
+
+    void addGenerator(int[] g, int[] inverse) {
+      generators.add(g);
+      inverseGenerators.add(inverse);
+      // the new generator may reach new points from any of the old ones
+      int known = orbitSize;
+      for (int i = 0; i < known; i++) {
+        extend(orbit[i], g, inverse);
+      }
+      // and the new points need every generator
+      for (int i = known; i < orbitSize; i++) {
+        for (int s = 0; s < generators.size(); s++) {
+          extend(orbit[i], generators.get(s), inverseGenerators.get(s));
+        }
+      }
+    }
+
+    /** @return the inverse representative for a point in the orbit, as an int permutation */
+    int[] inverse(int point) {
+      char[] rep = inverseReps[point];
+      int[] result = new int[rep.length];
+      for (int p = 0; p < rep.length; p++) {
+        result[p] = rep[p];
+      }
+      return result;
+    }
+
+    /** @return true if the generator takes a point of the orbit outside it */
+    boolean extendedBy(int[] g) {
+      for (int i = 0; i < orbitSize; i++) {
+        if (inverseReps[g[orbit[i]]] == null) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void extend(int point, int[] g, int[] inverse) {
+      int image = g[point];
+      if (inverseReps[image] == null) {
+        // (u g)^-1 = g^-1 u^-1, applied as g^-1 first
+        char[] rep = inverseReps[point];
+        char[] result = new char[rep.length];
+        for (int p = 0; p < rep.length; p++) {
+          result[p] = rep[inverse[p]];
+        }
+        inverseReps[image] = result;
+        orbit[orbitSize++] = image;
+      }
+    }
+  }
+}
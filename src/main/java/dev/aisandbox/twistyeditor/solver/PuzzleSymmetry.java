@@ -0,0 +1,214 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The symmetries of a puzzle, found from its zero cost moves (the whole puzzle rotations from the
+ * cuboid builder) and the colours of its cells, used to map each state to a representative of its
+ * symmetry class.
+ *
+ * <p>A symmetry turns the whole puzzle and then renames the colours, so the solved state stays
+ * solved: turning a cube with x takes the white face to where the green one was, so white is
+ * renamed to green and so on. Only turns that give a consistent renaming, and that map the moves
+ * onto moves of the same cost, are kept. States in the same class are then the same distance from
+ * solved, and searches only need to keep one of them, saving up to 24 times the memory for a cube.
+ * Mirror images aren't found, as no move reflects the puzzle.
+ *
+ * <p>The representative of a class is the state that comes first comparing cell by cell.
+ */
+public class PuzzleSymmetry {
+
+  /** The most turns the zero cost moves may reach together. */
+  public static final int MAX_SYMMETRIES = 1 << 12;
+
+  private final int cardinality;
+  // for each symmetry, the cell each new cell takes its colour from, and the colour renaming
+  private final int[][] matrices;
+  private final byte[][] colourMaps;
+
+  /**
+   * Find the symmetries that map all the compiled moves onto each other.
+   *
+   * @param puzzle the puzzle, this must have been compiled
+   */
+  public PuzzleSymmetry(Puzzle puzzle) {
+    this(puzzle, puzzle.getCompiledMoves().keySet());
+  }
+
+  /**
+   * Find the symmetries that map some of the moves onto each other, for searches that only use
+   * those moves.
+   *
+   * @param puzzle the puzzle, this must have been compiled
+   * @param moveNames the names of the compiled moves that must be kept
+   */
+  public PuzzleSymmetry(Puzzle puzzle, Collection<String> moveNames) {
+    byte[] solved = puzzle.getInitialState();
+    cardinality = solved.length;
+    Map<String, CompiledMove> compiled = new TreeMap<>(puzzle.getCompiledMoves());
+    List<CompiledMove> kept = new ArrayList<>();
+    Map<String, Integer> costOf = new HashMap<>();
+    for (String name : moveNames) {
+      CompiledMove move = compiled.get(name);
+      if (move == null) {
+        throw new IllegalArgumentException("Unknown move '" + name + "'");
+      }
+      kept.add(move);
+      costOf.put(key(move), move.getCost());
+    }
+    List<int[]> matrixList = new ArrayList<>();
+    List<byte[]> colourList = new ArrayList<>();
+    for (CompiledMove turn : turns(compiled.values())) {
+      byte[] colours = colourMap(turn, solved);
+      if (colours != null && keepsMoves(turn, kept, costOf)) {
+        int[] matrix = new int[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+          matrix[i] = turn.getMatrixElement(i);
+        }
+        matrixList.add(matrix);
+        colourList.add(colours);
+      }
+    }
+    matrices = matrixList.toArray(new int[0][]);
+    colourMaps = colourList.toArray(new byte[0][]);
+  }
+
+  /** Find every turn the zero cost moves reach, starting with doing nothing. */
+  private List<CompiledMove> turns(Collection<CompiledMove> moves) {
+    List<CompiledMove> zeroCost = new ArrayList<>();
+    for (CompiledMove move : moves) {
+      if (move.getCost() == 0) {
+        zeroCost.add(move);
+      }
+    }
+    List<CompiledMove> found = new ArrayList<>();
+    Map<String, Boolean> seen = new HashMap<>();
+    CompiledMove identity = CompiledMove.identity(cardinality);
+    found.add(identity);
+    seen.put(key(identity), true);
+    for (int i = 0; i < found.size(); i++) {
+      for (CompiledMove move : zeroCost) {
+        CompiledMove next = found.get(i).then(move);
+        if (seen.putIfAbsent(key(next), true) == null) {
+          if (found.size() == MAX_SYMMETRIES) {
+            throw new IllegalArgumentException(
+                "The zero cost moves reach more than " + MAX_SYMMETRIES + " positions");
+          }
+          found.add(next);
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Work out how the colours are renamed so the turned solved state is solved again.
+   *
+   * @return the new name of each colour, or null if there's no consistent renaming
+   */
+  private static byte[] colourMap(CompiledMove turn, byte[] solved) {
+    byte[] map = new byte[256];
+    byte[] inverse = new byte[256];
+    Arrays.fill(map, (byte) -1);
+    Arrays.fill(inverse, (byte) -1);
+    for (int i = 0; i < solved.length; i++) {
+      int from = solved[turn.getMatrixElement(i)] & 0xFF;
+      int to = solved[i] & 0xFF;
+      if (map[from] == -1 && inverse[to] == -1) {
+        map[from] = (byte) to;
+        inverse[to] = (byte) from;
+      } else if (map[from] != (byte) to) {
+        return null;
+      }
+    }
+    // colours that aren't used keep their names
+    for (int c = 0; c < map.length; c++) {
+      if (map[c] == -1) {
+        map[c] = (byte) c;
+      }
+    }
+    return map;
+  }
+
+  /** Check that turning, moving and turning back is always one of the moves, for the same cost. */
+  private static boolean keepsMoves(
+      CompiledMove turn, List<CompiledMove> moves, Map<String, Integer> costOf) {
+    CompiledMove back = turn.inverse();
+    for (CompiledMove move : moves) {
+      Integer cost = costOf.get(key(back.then(move).then(turn)));
+      if (cost == null || cost != move.getCost()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String key(CompiledMove move) {
+    int[] matrix = new int[move.getCardinality()];
+    for (int i = 0; i < matrix.length; i++) {
+      matrix[i] = move.getMatrixElement(i);
+    }
+    return Arrays.toString(matrix);
+  }
+
+  /** @return the number of symmetries, including doing nothing */
+  public int getSymmetryCount() {
+    return matrices.length;
+  }
+
+  /**
+   * Find the representative of a state's symmetry class. This allocates nothing, so it can be
+   * called from several threads at once.
+   *
+   * @param state the colour of each cell
+   * @param result filled with the representative, this must not be the state array
+   */
+  public void canonicalise(byte[] state, byte[] result) {
+    int best = 0;
+    for (int k = 1; k < matrices.length; k++) {
+      if (compare(state, k, best) < 0) {
+        best = k;
+      }
+    }
+    int[] matrix = matrices[best];
+    byte[] colours = colourMaps[best];
+    for (int i = 0; i < cardinality; i++) {
+      result[i] = colours[state[matrix[i]] & 0xFF];
+    }
+  }
+
+  /**
+   * Find the representative of a state's symmetry class.
+   *
+   * @param state the colour of each cell
+   * @return the representative
+   */
+  public byte[] canonicalise(byte[] state) {
+    byte[] result = new byte[cardinality];
+    canonicalise(state, result);
+    return result;
+  }
+
+  /** Compare the state under two symmetries, stopping at the first cell that differs. */
+  private int compare(byte[] state, int a, int b) {
+    int[] matrixA = matrices[a];
+    int[] matrixB = matrices[b];
+    byte[] coloursA = colourMaps[a];
+    byte[] coloursB = colourMaps[b];
+    for (int i = 0; i < cardinality; i++) {
+      int diff = coloursA[state[matrixA[i]] & 0xFF] - coloursB[state[matrixB[i]] & 0xFF];
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,27 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** A sequence of moves that solves a puzzle, along with what it took to find it. */
+@Getter
+@AllArgsConstructor
+public class Solution {
+
+  /** The names of the moves, in the order they are applied. */
+  private final List<String> moves;
+
+  /** The total {@link dev.aisandbox.twistyeditor.model.Move#getCost()} of the moves. */
+  private final int cost;
+
+  /** The number of states looked at during the search. */
+  private final long nodes;
+
+  private final long elapsedNanos;
+
+  @Override
+  public String toString() {
+    return String.join(" ", moves);
+  }
+}
@@ -0,0 +1,63 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import lombok.Getter;
+
+/**
+ * Reads a file of packed states in order, mapping it into memory a window at a time so files
+ * larger than the heap (or the address space) can be read.
+ */
+class StateFileReader implements Closeable {
+
+  private final FileChannel channel;
+  private final int wordCount;
+  private final long recordBytes;
+  private final long windowRecords;
+  @Getter private final long stateCount;
+  private long read = 0;
+  private LongBuffer window = null;
+
+  /** The state most recently returned by {@link #next()}. */
+  @Getter private final long[] current;
+
+  StateFileReader(Path file, int wordCount, int windowBytes) throws IOException {
+    this.wordCount = wordCount;
+    recordBytes = 8L * wordCount;
+    windowRecords = Math.max(1, windowBytes / recordBytes);
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+    stateCount = channel.size() / recordBytes;
+    current = new long[wordCount];
+  }
+
+  /**
+   * Move to the next state.
+   *
+   * @return false if there are no more states
+   */
+  boolean next() throws IOException {
+    if (read == stateCount) {
+      return false;
+    }
+    if (window == null || !window.hasRemaining()) {
+      long records = Math.min(windowRecords, stateCount - read);
+      window =
+          channel
+              .map(FileChannel.MapMode.READ_ONLY, read * recordBytes, records * recordBytes)
+              .asLongBuffer();
+    }
+    window.get(current, 0, wordCount);
+    read++;
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+}
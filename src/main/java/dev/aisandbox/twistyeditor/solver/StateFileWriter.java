@@ -0,0 +1,65 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import lombok.Getter;
+
+/**
+ * Writes packed states to a file through memory mapped windows. The file is trimmed to the states
+ * written when it is closed.
+ */
+class StateFileWriter implements Closeable {
+
+  private final FileChannel channel;
+  private final int wordCount;
+  private final long recordBytes;
+  private final long windowRecords;
+  @Getter private long stateCount = 0;
+  private LongBuffer window = null;
+
+  StateFileWriter(Path file, int wordCount, int windowBytes) throws IOException {
+    this.wordCount = wordCount;
+    recordBytes = 8L * wordCount;
+    windowRecords = Math.max(1, windowBytes / recordBytes);
+    channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Write one state.
+   *
+   * @param src the array holding the state
+   * @param offset the first word of the state
+   */
+  void write(long[] src, int offset) throws IOException {
+    if (window == null || !window.hasRemaining()) {
+      window =
+          channel
+              .map(
+                  FileChannel.MapMode.READ_WRITE,
+                  stateCount * recordBytes,
+                  windowRecords * recordBytes)
+              .asLongBuffer();
+    }
+    window.put(src, offset, wordCount);
+    stateCount++;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    // mapping the last window may have extended the file past the end of the states
+    channel.truncate(stateCount * recordBytes);
+    channel.force(true);
+    channel.close();
+  }
+}
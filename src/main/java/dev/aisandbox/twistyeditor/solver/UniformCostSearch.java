@@ -0,0 +1,224 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.PackedState;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Finds lowest cost solutions with a uniform cost (Dijkstra) search over the puzzle's states,
+ * using the cost of each compiled move. Move costs are small integers, so the open states are
+ * kept in a bucket per cost rather than a heap: a ring of max move cost + 1 buckets is enough,
+ * and adding or taking a state is constant time.
+ *
+ * <p>Zero cost moves add states to the bucket being worked through. Each state is expanded at
+ * most once, so moves like whole puzzle rotations that cost nothing can't make the search go round
+ * in circles. States are held packed, with their cost and how they were reached, which limits
+ * this to shallow solutions; {@link IdaStarSolver} uses far less memory for deeper ones.
+ */
+@Slf4j
+public class UniformCostSearch {
+
+  private final byte[] solved;
+  private final int wordCount;
+  private final CompiledMove[] moves;
+  private final String[] names;
+  private final int[] costs;
+  private final int bucketCount;
+
+  /** Give up on solutions costing more than this. */
+  @Getter @Setter private int maxCost = 30;
+
+  /** Give up once this many states have been found. */
+  @Getter @Setter private int maxStates = 1 << 24;
+
+  /**
+   * Create a search using every compiled move.
+   *
+   * @param puzzle the puzzle, this must have been compiled
+   */
+  public UniformCostSearch(Puzzle puzzle) {
+    solved = puzzle.getInitialState();
+    wordCount = PackedState.wordCount(solved.length);
+    // sort the moves so the solutions don't depend on the map order
+    Map<String, CompiledMove> sorted = new TreeMap<>(puzzle.getCompiledMoves());
+    moves = sorted.values().toArray(new CompiledMove[0]);
+    names = sorted.keySet().toArray(new String[0]);
+    costs = new int[moves.length];
+    int maxMoveCost = 0;
+    for (int m = 0; m < moves.length; m++) {
+      costs[m] = moves[m].getCost();
+      if (costs[m] < 0) {
+        throw new IllegalArgumentException("Move '" + names[m] + "' has a negative cost");
+      }
+      maxMoveCost = Math.max(maxMoveCost, costs[m]);
+    }
+    bucketCount = maxMoveCost + 1;
+  }
+
+  /**
+   * Solve a position.
+   *
+   * @param position a move taking the solved puzzle to the position to solve
+   * @return a lowest cost solution, or empty if there is none within the limits
+   */
+  public Optional<Solution> solve(CompiledMove position) {
+    byte[] state = solved.clone();
+    position.applyMove(state);
+    return solve(state);
+  }
+
+  /**
+   * Solve a state.
+   *
+   * @param start the colour of each cell
+   * @return a lowest cost solution, or empty if there is none within the limits
+   */
+  public Optional<Solution> solve(byte[] start) {
+    long startTime = System.nanoTime();
+    long[] goal = new long[wordCount];
+    PackedState.pack(solved, goal, 0);
+    StateIndex index = new StateIndex();
+    // for each state found, its lowest cost so far and the state and move it was reached by
+    IntList cost = new IntList();
+    IntList parent = new IntList();
+    IntList via = new IntList();
+    BitSet expanded = new BitSet();
+    IntList[] buckets = new IntList[bucketCount];
+    for (int b = 0; b < bucketCount; b++) {
+      buckets[b] = new IntList();
+    }
+    long[] packed = new long[wordCount];
+    PackedState.pack(start, packed, 0);
+    index.add(packed);
+    cost.add(0);
+    parent.add(-1);
+    via.add(-1);
+    buckets[0].add(0);
+    long queued = 1;
+    long nodes = 0;
+    byte[] state = new byte[solved.length];
+    byte[] next = new byte[solved.length];
+    for (int current = 0; current <= maxCost && queued > 0; current++) {
+      IntList bucket = buckets[current % bucketCount];
+      // zero cost moves add to this bucket while it is being worked through
+      for (int i = 0; i < bucket.size(); i++) {
+        int id = bucket.get(i);
+        if (cost.get(id) != current || expanded.get(id)) {
+          // already expanded, or found again for less
+          continue;
+        }
+        expanded.set(id);
+        nodes++;
+        if (PackedState.equals(index.states.getWords(), id * wordCount, goal, 0, wordCount)) {
+          return Optional.of(solution(id, current, parent, via, nodes, startTime));
+        }
+        PackedState.unpack(index.states.getWords(), id * wordCount, state);
+        for (int m = 0; m < moves.length; m++) {
+          int total = current + costs[m];
+          if (total > maxCost) {
+            continue;
+          }
+          moves[m].applyMove(state, next);
+          PackedState.pack(next, packed, 0);
+          int child = index.find(packed);
+          if (child < 0) {
+            if (index.size() == maxStates) {
+              log.info("Gave up after finding {} states", maxStates);
+              return Optional.empty();
+            }
+            child = index.add(packed);
+            cost.add(total);
+            parent.add(id);
+            via.add(m);
+          } else if (total < cost.get(child)) {
+            cost.set(child, total);
+            parent.set(child, id);
+            via.set(child, m);
+          } else {
+            continue;
+          }
+          buckets[total % bucketCount].add(child);
+          queued++;
+        }
+      }
+      queued -= bucket.size();
+      bucket.clear();
+    }
+    return Optional.empty();
+  }
+
+  private Solution solution(
+      int id, int total, IntList parent, IntList via, long nodes, long startTime) {
+    List<String> path = new ArrayList<>();
+    for (int node = id; parent.get(node) >= 0; node = parent.get(node)) {
+      path.add(names[via.get(node)]);
+    }
+    Collections.reverse(path);
+    return new Solution(path, total, nodes, System.nanoTime() - startTime);
+  }
+
+  /**
+   * The states found so far, numbered in the order they were found, with an open addressing hash
+   * table of state numbers to look them up.
+   */
+  private class StateIndex {
+    final PackedStateList states = new PackedStateList(wordCount);
+    // state number + 1 in each slot, zero for an empty slot
+    private int[] slots = new int[1 << 10];
+
+    int size() {
+      return states.getSize();
+    }
+
+    /** @return the state number, or -1 if it hasn't been found */
+    int find(long[] packed) {
+      int mask = slots.length - 1;
+      int slot = (int) PackedState.hash(packed, 0, wordCount) & mask;
+      while (slots[slot] != 0) {
+        int id = slots[slot] - 1;
+        if (PackedState.equals(states.getWords(), id * wordCount, packed, 0, wordCount)) {
+          return id;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+
+    /** Add a state that isn't in the index, and return its number. */
+    int add(long[] packed) {
+      if (states.getSize() * 2 >= slots.length) {
+        grow();
+      }
+      int id = states.getSize();
+      states.add(packed, 0);
+      insert(id);
+      return id;
+    }
+
+    private void insert(int id) {
+      int mask = slots.length - 1;
+      int slot = (int) PackedState.hash(states.getWords(), id * wordCount, wordCount) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = id + 1;
+    }
+
+    private void grow() {
+      slots = new int[slots.length * 2];
+      for (int id = 0; id < states.getSize(); id++) {
+        insert(id);
+      }
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package dev.aisandbox.twistyeditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.thoughtworks.xstream.XStream;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BinaryPuzzleCodecTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void roundTripTest() throws IOException {
+    XStream xstream = PuzzleUtil.getCodec();
+    for (String name : new String[] {"Cube3.tp", "Pyramid3.tp"}) {
+      Puzzle puzzle = (Puzzle) xstream.fromXML(new File(name));
+      String xml = xstream.toXML(puzzle);
+      File binary = tempDir.resolve(name + "b").toFile();
+      PuzzleUtil.savePuzzle(puzzle, binary);
+      assertTrue(binary.length() < new File(name).length(), name + " binary is smaller");
+      Puzzle loaded = PuzzleUtil.loadPuzzle(binary);
+      assertEquals(xml, xstream.toXML(loaded), name + " round trip");
+      // and back out as XML through the same helpers
+      File text = tempDir.resolve(name).toFile();
+      PuzzleUtil.savePuzzle(loaded, text);
+      assertEquals(xml, xstream.toXML(PuzzleUtil.loadPuzzle(text)), name + " XML round trip");
+    }
+  }
+
+  @Test
+  public void corruptTest() throws IOException {
+    Puzzle puzzle = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Pyramid3.tp"));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryPuzzleCodec.write(puzzle, out);
+    byte[] bytes = out.toByteArray();
+    ByteBuffer truncated = ByteBuffer.wrap(bytes, 0, bytes.length / 2).slice();
+    assertThrows(IOException.class, () -> BinaryPuzzleCodec.read(truncated));
+    Path xml = Files.copy(new File("Pyramid3.tp").toPath(), tempDir.resolve("Pyramid3.tpb"));
+    assertThrows(IOException.class, () -> PuzzleUtil.loadPuzzle(xml.toFile()));
+    // a negative length for the first icon
+    ByteBuffer negative = ByteBuffer.wrap(bytes.clone());
+    assertEquals(BinaryPuzzleCodec.ICON, negative.getInt(12));
+    negative.putInt(24, -2);
+    assertThrows(IOException.class, () -> BinaryPuzzleCodec.read(negative));
+  }
+
+  @Test
+  public void outOfRangeMatrixTest() throws IOException {
+    Puzzle puzzle = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Pyramid3.tp"));
+    int[] matrix = new int[puzzle.getCells().size()];
+    matrix[0] = -1;
+    matrix[1] = 0x12345;
+    puzzle.getCompiledMoves().put("legacy", new CompiledMove(matrix));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryPuzzleCodec.write(puzzle, out);
+    Puzzle loaded = BinaryPuzzleCodec.read(ByteBuffer.wrap(out.toByteArray()));
+    CompiledMove move = loaded.getCompiledMoves().get("legacy");
+    assertEquals(-1, move.getMatrixElement(0));
+    assertEquals(0x12345, move.getMatrixElement(1));
+    assertEquals(0, move.getMatrixElement(2));
+  }
+}
@@ -0,0 +1,84 @@
+package dev.aisandbox.twistyeditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.thoughtworks.xstream.XStream;
+import dev.aisandbox.twistyeditor.model.Cell;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.CuboidBuilder;
+import dev.aisandbox.twistyeditor.model.Move;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+@Slf4j
+public class CompiledMoveConverterTest {
+
+  private static void assertSameMoves(Puzzle expected, Puzzle actual) {
+    assertEquals(expected.getCompiledMoves().keySet(), actual.getCompiledMoves().keySet());
+    for (Map.Entry<String, CompiledMove> entry : expected.getCompiledMoves().entrySet()) {
+      CompiledMove move = actual.getCompiledMoves().get(entry.getKey());
+      assertTrue(entry.getValue().isSamePermutation(move), entry.getKey());
+      assertEquals(entry.getValue().getCost(), move.getCost(), entry.getKey());
+    }
+  }
+
+  @Test
+  public void cycleTest() {
+    XStream xstream = PuzzleUtil.getCodec();
+    // the bundled puzzles were saved with a full matrix
+    Puzzle cube = (Puzzle) xstream.fromXML(new File("Cube3.tp"));
+    String xml = xstream.toXML(cube);
+    assertFalse(xml.contains("<matrix>"));
+    Puzzle loaded = (Puzzle) xstream.fromXML(xml);
+    assertSameMoves(cube, loaded);
+    assertEquals(xml, xstream.toXML(loaded));
+    // compiled move images are still shared with the move icons
+    for (Move move : loaded.getMoves()) {
+      assertSame(
+          move.getLazyImageIcon(), loaded.getCompiledMoves().get(move.getName()).getLazyImage());
+    }
+  }
+
+  @Test
+  public void notPermutationTest() {
+    XStream xstream = PuzzleUtil.getCodec();
+    CompiledMove move = new CompiledMove(new int[] {1, 1, 2});
+    String xml = xstream.toXML(move);
+    assertTrue(xml.contains("<matrix>"));
+    CompiledMove loaded = (CompiledMove) xstream.fromXML(xml);
+    assertEquals(1, loaded.getMatrixElement(0));
+    assertEquals(1, loaded.getMatrixElement(1));
+    assertEquals(2, loaded.getMatrixElement(2));
+  }
+
+  @Test
+  public void sizeTest() throws IOException {
+    Puzzle puzzle = new Puzzle();
+    ObservableList<Cell> cells = FXCollections.observableList(puzzle.getCells());
+    ObservableList<Move> moves = FXCollections.observableList(puzzle.getMoves());
+    new CuboidBuilder(cells, moves, 10, 10, 10).createCuboid();
+    puzzle.compileMoves();
+    XStream xstream = PuzzleUtil.getCodec();
+    // size of the compiled moves written as cycles and as a full matrix
+    int cycles = 0;
+    int full = 0;
+    for (CompiledMove move : puzzle.getCompiledMoves().values()) {
+      move.setImage(null);
+      cycles += xstream.toXML(move).length();
+      full += move.getCardinality() * "\n    <int>123</int>".length();
+    }
+    log.info("Compiled moves take {} characters as cycles, about {} as matrices", cycles, full);
+    assertTrue(cycles * 5 < full);
+    Puzzle loaded = (Puzzle) xstream.fromXML(xstream.toXML(puzzle));
+    assertSameMoves(puzzle, loaded);
+  }
+}
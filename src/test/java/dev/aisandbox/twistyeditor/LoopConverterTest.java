@@ -0,0 +1,73 @@
+package dev.aisandbox.twistyeditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.thoughtworks.xstream.XStream;
+import dev.aisandbox.twistyeditor.model.Cell;
+import dev.aisandbox.twistyeditor.model.Loop;
+import dev.aisandbox.twistyeditor.model.Move;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+public class LoopConverterTest {
+
+  @Test
+  public void legacyTest() {
+    // the bundled puzzles were saved with a reference per loop cell
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    Move front = cube.getMoves().get(0);
+    assertEquals("F", front.getName());
+    // cell[19] in an XPath is the 19th cell, index 18
+    assertSame(cube.getCells().get(18), front.getLoops().get(0).getCells().get(0));
+    assertSame(cube.getCells().get(24), front.getLoops().get(0).getCells().get(3));
+    assertEquals(Optional.empty(), cube.compileMoves());
+  }
+
+  @Test
+  public void indexTest() {
+    XStream xstream = PuzzleUtil.getCodec();
+    Puzzle cube = (Puzzle) xstream.fromXML(new File("Cube3.tp"));
+    String xml = xstream.toXML(cube);
+    assertTrue(xml.contains("<Loop>18 20 26 24</Loop>"));
+    assertFalse(xml.contains("cells/cell["));
+    assertTrue(xml.length() < new File("Cube3.tp").length());
+    Puzzle loaded = (Puzzle) xstream.fromXML(xml);
+    assertEquals(xml, xstream.toXML(loaded));
+    for (int m = 0; m < cube.getMoves().size(); m++) {
+      for (int l = 0; l < cube.getMoves().get(m).getLoops().size(); l++) {
+        Loop loop = loaded.getMoves().get(m).getLoops().get(l);
+        for (int c = 0; c < loop.getCells().size(); c++) {
+          Cell original = cube.getMoves().get(m).getLoops().get(l).getCells().get(c);
+          int index = cube.getCells().indexOf(original);
+          assertSame(loaded.getCells().get(index), loop.getCells().get(c));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void strayCellTest() {
+    // a loop cell that isn't in the puzzle is written out in full
+    XStream xstream = PuzzleUtil.getCodec();
+    Puzzle puzzle = new Puzzle();
+    Cell cell = new Cell();
+    cell.setScale(7);
+    puzzle.getCells().add(new Cell());
+    Move move = new Move();
+    move.setName("M");
+    Loop loop = new Loop();
+    loop.getCells().add(puzzle.getCells().get(0));
+    loop.getCells().add(cell);
+    move.getLoops().add(loop);
+    puzzle.getMoves().add(move);
+    Puzzle loaded = (Puzzle) xstream.fromXML(xstream.toXML(puzzle));
+    Loop loadedLoop = loaded.getMoves().get(0).getLoops().get(0);
+    assertSame(loaded.getCells().get(0), loadedLoop.getCells().get(0));
+    assertEquals(7, loadedLoop.getCells().get(1).getScale());
+  }
+}
@@ -0,0 +1,100 @@
+package dev.aisandbox.twistyeditor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.thoughtworks.xstream.XStream;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Move;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class StreamingPuzzleLoaderTest {
+
+  @Test
+  public void sameAsXStreamTest() throws IOException {
+    XStream xstream = PuzzleUtil.getCodec();
+    for (String name : new String[] {"Cube3.tp", "Pyramid3.tp"}) {
+      // the bundled files are in the older format, with references
+      Puzzle expected = (Puzzle) xstream.fromXML(new File(name));
+      String xml = xstream.toXML(expected);
+      assertEquals(xml, xstream.toXML(StreamingPuzzleLoader.load(new File(name))), name);
+      // and as saved now
+      Puzzle loaded =
+          StreamingPuzzleLoader.load(
+              new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+              StreamingPuzzleLoader.ATTACH);
+      assertEquals(xml, xstream.toXML(loaded), name);
+      for (Move move : loaded.getMoves()) {
+        assertSame(
+            move.getLazyImageIcon(), loaded.getCompiledMoves().get(move.getName()).getLazyImage());
+      }
+    }
+  }
+
+  @Test
+  public void orderTest() throws IOException {
+    List<String> events = new ArrayList<>();
+    StreamingPuzzleLoader.load(
+        new File("Cube3.tp"),
+        new StreamingPuzzleLoader.Listener() {
+          @Override
+          public void cellsLoaded(Puzzle puzzle) {
+            events.add("cells " + puzzle.getCells().size());
+          }
+
+          @Override
+          public void moveLoaded(Puzzle puzzle, Move move) {
+            // the loops point at the puzzle's cells
+            assertTrue(puzzle.getCells().containsAll(move.getLoops().get(0).getCells()));
+            events.add("move");
+          }
+
+          @Override
+          public void compiledMoveLoaded(Puzzle puzzle, String name, CompiledMove move) {
+            events.add("compiled");
+          }
+        });
+    assertEquals("cells 54", events.get(0));
+    assertEquals("move", events.get(1));
+    assertEquals(1 + 45 + 45, events.size());
+  }
+
+  @Test
+  public void notPuzzleTest() {
+    assertThrows(
+        IOException.class,
+        () ->
+            StreamingPuzzleLoader.load(
+                new ByteArrayInputStream("<cell/>".getBytes(StandardCharsets.UTF_8)),
+                StreamingPuzzleLoader.ATTACH));
+  }
+
+  @Test
+  public void badValueTest() throws IOException {
+    String xml =
+        new String(Files.readAllBytes(new File("Cube3.tp").toPath()), StandardCharsets.UTF_8);
+    for (String bad :
+        new String[] {
+          xml.replaceFirst("<shape>SQUARE</shape>", "<shape>BLOB</shape>"),
+          xml.replaceFirst("<colour>WHITE</colour>", "<colour>PLAID</colour>"),
+          xml.replaceFirst("<scale>", "<scale>x")
+        }) {
+      assertThrows(
+          IOException.class,
+          () ->
+              StreamingPuzzleLoader.load(
+                  new ByteArrayInputStream(bad.getBytes(StandardCharsets.UTF_8)),
+                  StreamingPuzzleLoader.ATTACH));
+    }
+  }
+}
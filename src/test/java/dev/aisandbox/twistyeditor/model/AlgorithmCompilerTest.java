@@ -0,0 +1,80 @@
+package dev.aisandbox.twistyeditor.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import java.io.File;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class AlgorithmCompilerTest {
+
+  @Test
+  @DisplayName("Sequence matches applying each move")
+  public void sequenceTest() {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    AlgorithmCompiler compiler = new AlgorithmCompiler(cube);
+    CompiledMove sexy = compiler.compile("R U R' U'");
+    String state = ColourEnum.decodeState(cube.getInitialState());
+    String expected = state;
+    for (String name : new String[] {"R", "U", "R'", "U'"}) {
+      expected = cube.getCompiledMoves().get(name).applyMove(expected);
+    }
+    assertEquals(expected, sexy.applyMove(state));
+    assertEquals(4, sexy.getCost());
+    assertEquals(6, sexy.getOrder());
+    // empty sequences do nothing
+    assertTrue(compiler.compile("  ").isIdentity());
+  }
+
+  @Test
+  @DisplayName("Repeated sequences come from the cache")
+  public void cacheTest() {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    AlgorithmCompiler compiler = new AlgorithmCompiler(cube, 2);
+    CompiledMove first = compiler.compile(" R   U ");
+    assertSame(first, compiler.compile("R U"));
+    // both spellings share one entry
+    assertEquals(1, compiler.getCachedCount());
+    compiler.compile("F");
+    compiler.compile("R U");
+    // F is now the oldest entry, so it is dropped
+    compiler.compile("L");
+    assertEquals(2, compiler.getCachedCount());
+    assertSame(first, compiler.compile("R U"));
+    // recompiling the puzzle empties the cache
+    cube.compileMoves();
+    assertNotSame(first, compiler.compile("R U"));
+    assertEquals(1, compiler.getCachedCount());
+  }
+
+  @Test
+  @DisplayName("Inverse and double of a move without its own entry")
+  public void suffixTest() {
+    Puzzle puzzle = new Puzzle();
+    Cell c1 = new Cell();
+    Cell c2 = new Cell();
+    Cell c3 = new Cell();
+    puzzle.getCells().add(c1);
+    puzzle.getCells().add(c2);
+    puzzle.getCells().add(c3);
+    Move m1 = new Move();
+    m1.setName("A");
+    Loop loop1 = new Loop();
+    loop1.getCells().add(c1);
+    loop1.getCells().add(c2);
+    loop1.getCells().add(c3);
+    m1.getLoops().add(loop1);
+    puzzle.getMoves().add(m1);
+    puzzle.compileMoves();
+    AlgorithmCompiler compiler = new AlgorithmCompiler(puzzle);
+    assertEquals("BCA", compiler.compile("A'").applyMove("ABC"));
+    assertEquals("BCA", compiler.compile("A2").applyMove("ABC"));
+    assertTrue(compiler.compile("A A'").isIdentity());
+    assertThrows(IllegalArgumentException.class, () -> compiler.compile("A B"));
+  }
+}
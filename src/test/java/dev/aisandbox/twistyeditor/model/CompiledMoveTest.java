@@ -0,0 +1,137 @@
+package dev.aisandbox.twistyeditor.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@Slf4j
+public class CompiledMoveTest {
+
+  static Puzzle cube;
+
+  @BeforeAll
+  public static void loadCube() {
+    cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+  }
+
+  @Test
+  @DisplayName("Byte state matches string state")
+  public void byteStateTest() {
+    byte[] state = cube.getInitialState();
+    String stringState = ColourEnum.decodeState(state);
+    byte[] next = new byte[state.length];
+    for (CompiledMove move : cube.getCompiledMoves().values()) {
+      move.applyMove(state, next);
+      stringState = move.applyMove(stringState);
+      byte[] swap = state;
+      state = next;
+      next = swap;
+      assertEquals(stringState, ColourEnum.decodeState(state));
+    }
+  }
+
+  @Test
+  @DisplayName("In place byte move matches copying move")
+  public void inPlaceTest() {
+    byte[] state = cube.getInitialState();
+    byte[] copy = state.clone();
+    byte[] next = new byte[state.length];
+    for (CompiledMove move : cube.getCompiledMoves().values()) {
+      move.applyMove(copy, next);
+      move.applyMove(state);
+      assertArrayEquals(next, state);
+      System.arraycopy(next, 0, copy, 0, next.length);
+    }
+  }
+
+  @Test
+  @DisplayName("Byte moves don't allocate")
+  public void allocationTest() {
+    com.sun.management.ThreadMXBean bean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    List<CompiledMove> moves = new ArrayList<>(cube.getCompiledMoves().values());
+    byte[] state = cube.getInitialState();
+    // warm up, this also creates the scratch buffers
+    for (CompiledMove move : moves) {
+      move.applyMove(state);
+    }
+    long before = bean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 1_000_000; i++) {
+      moves.get(i % moves.size()).applyMove(state);
+    }
+    long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+    log.info("Allocated {} bytes over 1,000,000 moves", allocated);
+    // allow a little for the measurement itself
+    assertTrue(allocated < 4096, "Allocated " + allocated + " bytes");
+  }
+
+  @Test
+  @DisplayName("Sparse moves match the dense matrix")
+  public void sparseTest() throws IOException {
+    Puzzle puzzle = new Puzzle();
+    ObservableList<Cell> cells = FXCollections.observableList(puzzle.getCells());
+    ObservableList<Move> moves = FXCollections.observableList(puzzle.getMoves());
+    new CuboidBuilder(cells, moves, 10, 10, 10).createCuboid();
+    puzzle.compileMoves();
+    // the outer face turns touch 140 of the 600 cells
+    assertTrue(puzzle.getCompiledMoves().get("R").isSparse());
+    assertEquals(140, puzzle.getCompiledMoves().get("R").getMovedCount());
+    assertFalse(puzzle.getCompiledMoves().get("x").isSparse());
+    byte[] state = puzzle.getInitialState();
+    String stringState = ColourEnum.decodeState(state);
+    byte[] next = new byte[state.length];
+    for (CompiledMove move : puzzle.getCompiledMoves().values()) {
+      // the string version always uses the matrix
+      stringState = move.applyMove(stringState);
+      move.applyMove(state, next);
+      move.applyMove(state);
+      assertArrayEquals(next, state);
+      assertEquals(stringState, ColourEnum.decodeState(state));
+    }
+  }
+
+  @Test
+  @DisplayName("Compose, inverse and power agree with the puzzle moves")
+  public void algebraTest() {
+    Map<String, CompiledMove> moves = cube.getCompiledMoves();
+    CompiledMove r = moves.get("R");
+    CompiledMove u = moves.get("U");
+    assertTrue(r.then(moves.get("R'")).isIdentity());
+    assertTrue(r.inverse().isSamePermutation(moves.get("R'")));
+    assertTrue(r.power(2).isSamePermutation(moves.get("R2")));
+    assertTrue(r.power(3).isSamePermutation(moves.get("R'")));
+    assertTrue(r.power(-1).isSamePermutation(moves.get("R'")));
+    assertTrue(r.power(4).isIdentity());
+    assertEquals(2, r.power(2).getCost());
+    // the cost is capped rather than overflowing
+    assertEquals(Integer.MAX_VALUE, r.power(Integer.MIN_VALUE).getCost());
+    assertEquals(Integer.MAX_VALUE, r.power(Long.MIN_VALUE).getCost());
+    assertTrue(r.power(Long.MIN_VALUE).isIdentity());
+    // composing matches applying one after the other
+    String state = ColourEnum.decodeState(cube.getInitialState());
+    assertEquals(u.applyMove(r.applyMove(state)), r.then(u).applyMove(state));
+    // well known orders on the 3x3x3
+    assertEquals(4, r.getOrder());
+    assertEquals(105, r.then(u).getOrder());
+    assertEquals(6, r.then(u).then(r.inverse()).then(u.inverse()).getOrder());
+    assertTrue(r.then(u).power(105).isIdentity());
+    assertTrue(CompiledMove.identity(54).isIdentity());
+  }
+
+}
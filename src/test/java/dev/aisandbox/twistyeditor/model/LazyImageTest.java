@@ -0,0 +1,67 @@
+package dev.aisandbox.twistyeditor.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.thoughtworks.xstream.XStream;
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+public class LazyImageTest {
+
+  @Test
+  public void loadTest() {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    for (Move move : cube.getMoves()) {
+      assertFalse(move.getLazyImageIcon().isDecoded(), move.getName());
+    }
+    Move front = cube.getMoves().get(0);
+    BufferedImage icon = front.getImageIcon();
+    assertEquals(Move.MOVE_ICON_WIDTH, icon.getWidth());
+    assertTrue(front.getLazyImageIcon().isDecoded());
+    assertSame(icon, front.getImageIcon());
+    // compiling shares the icon with the compiled move, without decoding it
+    cube.compileMoves();
+    Move back = cube.getMoves().get(1);
+    assertSame(back.getLazyImageIcon(), cube.getCompiledMoves().get(back.getName()).getLazyImage());
+    assertFalse(back.getLazyImageIcon().isDecoded());
+  }
+
+  @Test
+  public void saveTest() throws IOException {
+    XStream xstream = PuzzleUtil.getCodec();
+    String original =
+        new String(Files.readAllBytes(new File("Cube3.tp").toPath()), StandardCharsets.UTF_8);
+    Puzzle cube = (Puzzle) xstream.fromXML(original);
+    // draw every icon, then check they are saved as they were loaded
+    cube.getSpritesheet();
+    String saved = xstream.toXML(cube);
+    Matcher icons = Pattern.compile("<imageIcon>([^<]*)</imageIcon>").matcher(original);
+    int count = 0;
+    while (icons.find()) {
+      assertTrue(saved.contains(icons.group()));
+      count++;
+    }
+    assertEquals(cube.getMoves().size(), count);
+  }
+
+  @Test
+  public void imageTest() throws IOException {
+    BufferedImage image = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+    image.setRGB(1, 2, 0xFF0000);
+    LazyImage lazy = LazyImage.of(image);
+    assertSame(image, lazy.get());
+    BufferedImage decoded = LazyImage.ofPng(lazy.getPng()).get();
+    assertEquals(4, decoded.getWidth());
+    assertEquals(0xFF0000, decoded.getRGB(1, 2) & 0xFFFFFF);
+  }
+}
@@ -2,8 +2,15 @@ package dev.aisandbox.twistyeditor.model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -124,5 +131,118 @@ public class MoveCompilerTest {
     String state2 = puzzle.getCompiledMoves().get("Move1").applyMove(state);
     assertEquals("EABCD",state2);
   }
-  
+
+  @Test
+  @DisplayName("Loop with a cell outside the puzzle")
+  public void missingCellTest() {
+    Puzzle puzzle = new Puzzle();
+    Cell c1 = new Cell();
+    Cell c2 = new Cell();
+    Cell c3 = new Cell();
+    puzzle.getCells().add(c1);
+    puzzle.getCells().add(c2);
+    // c3 is never added to the puzzle
+    Move m1 = new Move();
+    m1.setName("Move1");
+    Loop loop1 = new Loop();
+    loop1.getCells().add(c1);
+    loop1.getCells().add(c3);
+    m1.getLoops().add(loop1);
+    puzzle.getMoves().add(m1);
+    // compile moves should warn and leave the move as the identity
+    Optional<String> result = puzzle.compileMoves();
+    assertTrue(result.get().contains("isn't in the puzzle"));
+    assertEquals("AB", puzzle.getCompiledMoves().get("Move1").applyMove("AB"));
+  }
+
+  @Test
+  @DisplayName("Only changed moves are recompiled")
+  public void incrementalTest() {
+    Puzzle puzzle = new Puzzle();
+    Cell c1 = new Cell();
+    Cell c2 = new Cell();
+    Cell c3 = new Cell();
+    puzzle.getCells().add(c1);
+    puzzle.getCells().add(c2);
+    puzzle.getCells().add(c3);
+    // Move1 swaps 1 and 2, Move2 swaps 2 and 3
+    Move m1 = new Move();
+    m1.setName("Move1");
+    Loop loop1 = new Loop();
+    loop1.getCells().add(c1);
+    loop1.getCells().add(c2);
+    m1.getLoops().add(loop1);
+    puzzle.getMoves().add(m1);
+    Move m2 = new Move();
+    m2.setName("Move2");
+    Loop loop2 = new Loop();
+    loop2.getCells().add(c2);
+    loop2.getCells().add(c3);
+    m2.getLoops().add(loop2);
+    puzzle.getMoves().add(m2);
+    assertFalse(puzzle.compileMoves().isPresent());
+    CompiledMove compiled1 = puzzle.getCompiledMoves().get("Move1");
+    CompiledMove compiled2 = puzzle.getCompiledMoves().get("Move2");
+    // nothing changed, both moves are reused
+    assertFalse(puzzle.compileMoves().isPresent());
+    assertSame(compiled1, puzzle.getCompiledMoves().get("Move1"));
+    assertSame(compiled2, puzzle.getCompiledMoves().get("Move2"));
+    // edit one loop, only that move is rebuilt
+    loop1.getCells().add(c3);
+    loop1.markDirty();
+    assertFalse(puzzle.compileMoves().isPresent());
+    assertNotSame(compiled1, puzzle.getCompiledMoves().get("Move1"));
+    assertSame(compiled2, puzzle.getCompiledMoves().get("Move2"));
+    assertEquals("CAB", puzzle.getCompiledMoves().get("Move1").applyMove("ABC"));
+    // reorder the cells, everything is rebuilt with the new indices
+    compiled2 = puzzle.getCompiledMoves().get("Move2");
+    Collections.swap(puzzle.getCells(), 0, 2);
+    assertFalse(puzzle.compileMoves().isPresent());
+    assertNotSame(compiled2, puzzle.getCompiledMoves().get("Move2"));
+    assertEquals("BCA", puzzle.getCompiledMoves().get("Move2").applyMove("CBA"));
+  }
+
+  @Test
+  @DisplayName("Parallel compile matches sequential compile")
+  public void parallelTest() throws IOException {
+    Puzzle sequential = createCube();
+    Puzzle parallel = createCube();
+    assertEquals(sequential.compileMoves(false), parallel.compileMoves(true));
+    assertEquals(sequential.getCompiledMoves().keySet(), parallel.getCompiledMoves().keySet());
+    String state = ColourEnum.decodeState(sequential.getInitialState());
+    for (String name : sequential.getCompiledMoves().keySet()) {
+      assertEquals(
+          sequential.getCompiledMoves().get(name).applyMove(state),
+          parallel.getCompiledMoves().get(name).applyMove(state));
+    }
+  }
+
+  @Test
+  @DisplayName("Parallel compile keeps the warning order")
+  public void parallelWarningsTest() throws IOException {
+    Puzzle sequential = createCube();
+    Puzzle parallel = createCube();
+    for (Puzzle puzzle : List.of(sequential, parallel)) {
+      // empty moves and duplicate names spread through the list
+      for (int i = 0; i < puzzle.getMoves().size(); i += 7) {
+        puzzle.getMoves().get(i).getLoops().clear();
+        puzzle.getMoves().get(i).markDirty();
+      }
+      for (int i = 3; i < puzzle.getMoves().size(); i += 11) {
+        puzzle.getMoves().get(i).setName("Duplicate");
+      }
+    }
+    Optional<String> warnings = sequential.compileMoves(false);
+    assertTrue(warnings.get().contains("Duplicate move name"));
+    assertEquals(warnings, parallel.compileMoves(true));
+  }
+
+  private static Puzzle createCube() throws IOException {
+    Puzzle puzzle = new Puzzle();
+    ObservableList<Cell> cells = FXCollections.observableList(puzzle.getCells());
+    ObservableList<Move> moves = FXCollections.observableList(puzzle.getMoves());
+    new CuboidBuilder(cells, moves, 5, 5, 5).createCuboid();
+    return puzzle;
+  }
+
 }
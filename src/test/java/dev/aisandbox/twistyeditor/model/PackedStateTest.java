@@ -0,0 +1,57 @@
+package dev.aisandbox.twistyeditor.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import java.io.File;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class PackedStateTest {
+
+  @Test
+  @DisplayName("Packed states match the state strings")
+  public void roundTripTest() {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    PackedState solved = cube.getSolvedState();
+    String state = ColourEnum.decodeState(cube.getInitialState());
+    assertEquals(state, solved.toState());
+    assertTrue(PackedState.of(state).isSolved(solved));
+    // 54 cells fit in four longs
+    long[] buffer = new long[PackedState.wordCount(54) * 2];
+    assertEquals(8, buffer.length);
+    for (CompiledMove move : cube.getCompiledMoves().values()) {
+      state = move.applyMove(state);
+      PackedState packed = PackedState.of(state);
+      assertEquals(state, packed.toState());
+      assertEquals(ColourEnum.fromCharacter(state.charAt(20)), packed.getColour(20));
+      assertEquals(PackedState.of(state), packed);
+      assertEquals(PackedState.of(state).hashCode(), packed.hashCode());
+      // and when stored inside a larger array
+      packed.copyTo(buffer, 4);
+      byte[] bytes = new byte[54];
+      PackedState.unpack(buffer, 4, bytes);
+      assertArrayEquals(ColourEnum.encodeState(state), bytes);
+      PackedState.pack(bytes, buffer, 0);
+      assertTrue(PackedState.equals(buffer, 0, buffer, 4, 4));
+      assertEquals(packed.hashCode(), (int) PackedState.hash(buffer, 0, 4));
+    }
+  }
+
+  @Test
+  @DisplayName("Solved check spots a single changed cell")
+  public void solvedTest() {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    PackedState solved = cube.getSolvedState();
+    byte[] state = cube.getInitialState();
+    // the last cell, in the partly used last word
+    state[53] = (byte) ((state[53] + 1) % ColourEnum.values().length);
+    PackedState changed = PackedState.of(state);
+    assertFalse(changed.isSolved(solved));
+    assertNotEquals(solved, changed);
+  }
+}
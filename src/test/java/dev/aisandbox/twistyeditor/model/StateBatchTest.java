@@ -0,0 +1,120 @@
+package dev.aisandbox.twistyeditor.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import java.io.File;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class StateBatchTest {
+
+  static Puzzle cube;
+  static CompiledMove[] moves;
+
+  @BeforeAll
+  public static void loadCube() {
+    cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    moves = cube.getCompiledMoves().values().toArray(new CompiledMove[0]);
+  }
+
+  @Test
+  @DisplayName("Batch moves match moving each state")
+  public void batchTest() {
+    // small enough to stay on one thread, and big enough to be split
+    checkBatch(10);
+    checkBatch(StateBatch.PARALLEL_THRESHOLD / 54 * 4);
+  }
+
+  private void checkBatch(int size) {
+    Random random = new Random(size);
+    byte[] initial = cube.getInitialState();
+    StateBatch batch = new StateBatch(initial, size);
+    byte[][] expected = new byte[size][];
+    for (int row = 0; row < size; row++) {
+      expected[row] = initial.clone();
+    }
+    byte[] next = new byte[initial.length];
+    for (int step = 0; step < 20; step++) {
+      if (step % 2 == 0) {
+        CompiledMove move = moves[random.nextInt(moves.length)];
+        batch.applyMove(move);
+        for (int row = 0; row < size; row++) {
+          move.applyMove(expected[row], next);
+          System.arraycopy(next, 0, expected[row], 0, next.length);
+        }
+      } else {
+        CompiledMove[] rowMoves = new CompiledMove[size];
+        for (int row = 0; row < size; row++) {
+          // leave some rows alone
+          if (random.nextInt(4) > 0) {
+            rowMoves[row] = moves[random.nextInt(moves.length)];
+            rowMoves[row].applyMove(expected[row], next);
+            System.arraycopy(next, 0, expected[row], 0, next.length);
+          }
+        }
+        batch.applyMoves(rowMoves);
+      }
+    }
+    byte[] actual = new byte[initial.length];
+    for (int row = 0; row < size; row++) {
+      batch.getState(row, actual);
+      assertArrayEquals(expected[row], actual);
+    }
+  }
+
+  @Test
+  @DisplayName("Large batches are split between pool threads")
+  public void splitTest() {
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    CompiledMove recording =
+        new CompiledMove(moves[0].getMatrix()) {
+          @Override
+          void applyMoveToColumns(byte[] src, byte[] dst, int size, int from, int to) {
+            threads.add(Thread.currentThread());
+            try {
+              // slow enough that the other threads steal some of the work
+              Thread.sleep(1);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            super.applyMoveToColumns(src, dst, size, from, to);
+          }
+        };
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      byte[] initial = cube.getInitialState();
+      int size = StateBatch.PARALLEL_THRESHOLD / initial.length * 32;
+      StateBatch batch = new StateBatch(initial, size, pool);
+      batch.applyMove(recording);
+      assertTrue(threads.size() > 1, "ran on " + threads);
+      for (Thread thread : threads) {
+        assertTrue(thread instanceof ForkJoinWorkerThread, thread + " is a pool thread");
+      }
+      // and the result is still right
+      byte[] expected = new byte[initial.length];
+      byte[] actual = new byte[initial.length];
+      moves[0].applyMove(initial, expected);
+      batch.getState(size - 1, actual);
+      assertArrayEquals(expected, actual);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  @DisplayName("Mismatched moves are rejected")
+  public void mismatchTest() {
+    StateBatch batch = new StateBatch(cube.getInitialState(), 4);
+    assertThrows(IllegalArgumentException.class, () -> batch.applyMove(new CompiledMove(10)));
+    assertThrows(IllegalArgumentException.class, () -> batch.applyMoves(new CompiledMove[3]));
+  }
+}
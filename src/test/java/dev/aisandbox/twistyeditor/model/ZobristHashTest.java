@@ -0,0 +1,52 @@
+package dev.aisandbox.twistyeditor.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import java.io.File;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ZobristHashTest {
+
+  @Test
+  @DisplayName("Incremental hashes match hashing the whole state")
+  public void incrementalTest() {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    CompiledMove[] moves = cube.getCompiledMoves().values().toArray(new CompiledMove[0]);
+    ZobristHash keys = new ZobristHash(54);
+    byte[] state = cube.getInitialState();
+    byte[] expected = cube.getInitialState();
+    byte[] next = new byte[54];
+    long solved = keys.hash(state);
+    long hash = solved;
+    Random random = new Random(1);
+    for (int i = 0; i < 1000; i++) {
+      CompiledMove move = moves[random.nextInt(moves.length)];
+      long delta = move.hashDelta(state, keys);
+      long previous = hash;
+      hash = move.applyMove(state, keys, hash);
+      move.applyMove(expected, next);
+      System.arraycopy(next, 0, expected, 0, 54);
+      assertArrayEquals(expected, state);
+      assertEquals(keys.hash(state), hash);
+      assertEquals(previous ^ delta, hash);
+    }
+    assertNotEquals(solved, hash);
+  }
+
+  @Test
+  @DisplayName("Moves that aren't permutations still update the hash")
+  public void notPermutationTest() {
+    ZobristHash keys = new ZobristHash(4);
+    // cells 0 and 1 both take the value from cell 2
+    CompiledMove move = new CompiledMove(new int[] {2, 2, 3, 3});
+    byte[] state = {1, 2, 3, 4};
+    long hash = move.applyMove(state, keys, keys.hash(state));
+    assertArrayEquals(new byte[] {3, 3, 4, 4}, state);
+    assertEquals(keys.hash(state), hash);
+  }
+}
@@ -0,0 +1,95 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.ColourEnum;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@Slf4j
+public class BreadthFirstSearchTest {
+
+  @Test
+  @DisplayName("Pyraminx tips give a known distribution")
+  public void tipsTest() {
+    Puzzle pyramid = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Pyramid3.tp"));
+    // each of the four tips turns on its own, so there are 3^4 states
+    BreadthFirstSearch bfs =
+        new BreadthFirstSearch(pyramid, Arrays.asList("l", "r", "u", "b", "l'", "r'", "u'", "b'"));
+    ExplorationResult result = bfs.explore();
+    assertTrue(result.isComplete());
+    assertEquals(81, result.getStateCount());
+    assertEquals(Arrays.asList(1L, 8L, 24L, 32L, 16L), result.getHistogram());
+    assertEquals(4, result.getMaxDepth());
+  }
+
+  @Test
+  @DisplayName("Depth limited search matches a string based search")
+  public void depthLimitTest() {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    BreadthFirstSearch bfs = new BreadthFirstSearch(cube);
+    bfs.setMaxDepth(3);
+    ExplorationResult result = bfs.explore();
+    log.info(
+        "Found {} states at {} states/s using {} bytes",
+        result.getStateCount(),
+        (long) result.getStatesPerSecond(),
+        result.getPeakMemoryBytes());
+    assertFalse(result.isComplete());
+    // the same search using strings
+    Set<String> seen = new HashSet<>();
+    List<String> frontier = new ArrayList<>();
+    frontier.add(ColourEnum.decodeState(cube.getInitialState()));
+    seen.addAll(frontier);
+    List<Long> expected = new ArrayList<>();
+    expected.add(1L);
+    for (int depth = 0; depth < 3; depth++) {
+      List<String> next = new ArrayList<>();
+      for (String state : frontier) {
+        for (CompiledMove move : cube.getCompiledMoves().values()) {
+          String moved = move.applyMove(state);
+          if (seen.add(moved)) {
+            next.add(moved);
+          }
+        }
+      }
+      expected.add((long) next.size());
+      frontier = next;
+    }
+    assertEquals(expected, result.getHistogram());
+    assertEquals(seen.size(), result.getStateCount());
+  }
+
+  @Test
+  @DisplayName("Sharded search matches the single threaded search")
+  public void parallelTest() {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    BreadthFirstSearch bfs = new BreadthFirstSearch(cube);
+    bfs.setMaxDepth(3);
+    ExplorationResult expected = bfs.explore();
+    bfs.setThreads(4);
+    ExplorationResult result = bfs.explore();
+    assertEquals(expected.getHistogram(), result.getHistogram());
+    assertEquals(expected.getStateCount(), result.getStateCount());
+    assertFalse(result.isComplete());
+    // and a search that runs to the end
+    Puzzle pyramid = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Pyramid3.tp"));
+    bfs = new BreadthFirstSearch(pyramid, Arrays.asList("l", "r", "u", "b", "l'", "r'", "u'", "b'"));
+    bfs.setThreads(3);
+    result = bfs.explore();
+    assertTrue(result.isComplete());
+    assertEquals(Arrays.asList(1L, 8L, 24L, 32L, 16L), result.getHistogram());
+  }
+}
@@ -0,0 +1,121 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.AlgorithmCompiler;
+import dev.aisandbox.twistyeditor.model.Move;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CellDistancesTest {
+
+  static Puzzle cube;
+  static CellDistances distances;
+
+  @BeforeAll
+  public static void setup() {
+    cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    // the saved compiled moves predate the rotations costing nothing
+    cube.compileMoves();
+    distances = CellDistances.build(cube);
+  }
+
+  @Test
+  @DisplayName("Distances follow the moves")
+  public void distanceTest() {
+    for (int i = 0; i < 54; i++) {
+      assertEquals(0, distances.getDistance(i, i));
+      for (int j = 0; j < 54; j++) {
+        // every move can be undone for the same cost
+        assertEquals(distances.getDistance(i, j), distances.getDistance(j, i));
+      }
+    }
+    // one turn of the right face moves a sticker along its cycle
+    int from = 0;
+    while (cube.getCompiledMoves().get("R").getMatrixElement(from) == from) {
+      from++;
+    }
+    int to = cube.getCompiledMoves().get("R").getMatrixElement(from);
+    assertTrue(distances.getDistance(to, from) <= 1);
+    // corner stickers never reach the centres
+    assertEquals(CellDistances.UNREACHABLE, distances.getDistance(0, 4));
+  }
+
+  @Test
+  @DisplayName("The heuristic is zero when solved and never overestimates")
+  public void heuristicTest() {
+    assertEquals(0, distances.sum(cube.getInitialState()));
+    // with the rotations free, a sticker can often be turned onto its colour for nothing
+    assertHeuristic(cube, distances, false);
+    Puzzle costed = costedCube();
+    assertHeuristic(costed, CellDistances.build(costed), true);
+  }
+
+  private static void assertHeuristic(Puzzle puzzle, CellDistances table, boolean positive) {
+    AlgorithmCompiler compiler = new AlgorithmCompiler(puzzle);
+    for (String scramble : new String[] {"R", "R U", "F R2 D'", "R U R' U'", "x y"}) {
+      byte[] state = puzzle.getInitialState();
+      compiler.compile(scramble).applyMove(state);
+      int cost = compiler.compile(scramble).getCost();
+      assertTrue(table.heuristic(state) <= cost, scramble);
+      if (positive) {
+        assertTrue(table.sum(state) > 0, scramble);
+      }
+    }
+  }
+
+  /** @return the cube with every move, rotations included, costing one */
+  private static Puzzle costedCube() {
+    Puzzle costed = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    for (Move move : costed.getMoves()) {
+      move.setCost(1);
+    }
+    costed.compileMoves();
+    return costed;
+  }
+
+  @Test
+  @DisplayName("Tables are cached next to the puzzle and rebuilt when the moves change")
+  public void cacheTest(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("cube.tp");
+    Files.copy(new File("Cube3.tp").toPath(), file);
+    CellDistances built = CellDistances.cached(cube, file);
+    Path cache = dir.resolve("cube.dist");
+    assertTrue(Files.exists(cache));
+    long modified = Files.getLastModifiedTime(cache).toMillis();
+    CellDistances loaded = CellDistances.cached(cube, file);
+    assertEquals(modified, Files.getLastModifiedTime(cache).toMillis());
+    for (int i = 0; i < 54; i++) {
+      for (int j = 0; j < 54; j++) {
+        assertEquals(built.getDistance(i, j), loaded.getDistance(i, j));
+      }
+    }
+    // making every rotation cost something changes the distances
+    CellDistances rebuilt = CellDistances.cached(costedCube(), file);
+    assertTrue(rebuilt.getDistance(4, 13) > loaded.getDistance(4, 13));
+  }
+
+  @Test
+  @DisplayName("A cache cut short is rebuilt")
+  public void truncatedCacheTest(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("cube.tp");
+    Files.copy(new File("Cube3.tp").toPath(), file);
+    CellDistances.cached(cube, file);
+    Path cache = dir.resolve("cube.dist");
+    long size = Files.size(cache);
+    Files.write(cache, Arrays.copyOf(Files.readAllBytes(cache), 100));
+    CellDistances rebuilt = CellDistances.cached(cube, file);
+    assertEquals(size, Files.size(cache));
+    assertEquals(distances.getDistance(4, 13), rebuilt.getDistance(4, 13));
+  }
+}
@@ -0,0 +1,103 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ExternalBreadthFirstSearchTest {
+
+  @Test
+  @DisplayName("Disk based search matches the in memory search")
+  public void matchTest(@TempDir Path dir) throws IOException {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    BreadthFirstSearch memory = new BreadthFirstSearch(cube);
+    memory.setMaxDepth(3);
+    ExplorationResult expected = memory.explore();
+    ExternalBreadthFirstSearch disk = new ExternalBreadthFirstSearch(cube, dir);
+    disk.setMaxDepth(3);
+    // small runs and windows, so there are plenty of both
+    disk.setRunStates(5000);
+    disk.setWindowBytes(4096);
+    ExplorationResult result = disk.explore();
+    assertEquals(expected.getHistogram(), result.getHistogram());
+    assertEquals(expected.getStateCount(), result.getStateCount());
+    assertFalse(result.isComplete());
+    assertEquals(27324 * 32, Files.size(dir.resolve("level-3.bin")));
+    // only the levels and checkpoint are left
+    try (Stream<Path> files = Files.list(dir)) {
+      assertEquals(5, files.count());
+    }
+  }
+
+  @Test
+  @DisplayName("Search carries on from a checkpoint")
+  public void resumeTest(@TempDir Path dir) throws IOException {
+    ExternalBreadthFirstSearch first =
+        ExternalBreadthFirstSearch.forFile(new File("Pyramid3.tp"), dir);
+    first.setMaxDepth(2);
+    first.setRunStates(100);
+    ExplorationResult partial = first.explore();
+    assertEquals(Arrays.asList(1L, 16L, 136L), partial.getHistogram());
+    // a new search, as if the program had been restarted
+    ExternalBreadthFirstSearch second =
+        ExternalBreadthFirstSearch.forFile(new File("Pyramid3.tp"), dir);
+    second.setMaxDepth(4);
+    second.setRunStates(100);
+    ExplorationResult result = second.explore();
+    assertEquals(Arrays.asList(1L, 16L, 136L, 896L, 5456L), result.getHistogram());
+    assertEquals(896 + 5456, result.getFoundCount());
+    // the checkpoint belongs to the pyramid
+    ExternalBreadthFirstSearch other = ExternalBreadthFirstSearch.forFile(new File("Cube3.tp"), dir);
+    assertThrows(IllegalStateException.class, other::explore);
+  }
+
+  @Test
+  @DisplayName("Search that runs to the end")
+  public void completeTest(@TempDir Path dir) throws IOException {
+    Puzzle pyramid = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Pyramid3.tp"));
+    // keep only the tips, 3^4 states
+    pyramid.getCompiledMoves().keySet().retainAll(Arrays.asList("l", "r", "u", "b"));
+    ExternalBreadthFirstSearch disk = new ExternalBreadthFirstSearch(pyramid, dir);
+    ExplorationResult result = disk.explore();
+    assertTrue(result.isComplete());
+    assertEquals(81, result.getStateCount());
+    // running again just reads the checkpoint
+    result = new ExternalBreadthFirstSearch(pyramid, dir).explore();
+    assertTrue(result.isComplete());
+    assertEquals(81, result.getStateCount());
+    assertEquals(0, result.getFoundCount());
+  }
+
+  @Test
+  @DisplayName("Sorting whole states")
+  public void sortTest() {
+    Random random = new Random(4);
+    int wordCount = 3;
+    long[] data = new long[1000 * wordCount];
+    for (int i = 0; i < data.length; i++) {
+      // plenty of ties in the first words
+      data[i] = random.nextInt(i % wordCount == 2 ? 1000 : 3) - 1;
+    }
+    ExternalBreadthFirstSearch.sort(data, 0, 1000, wordCount, new long[wordCount]);
+    for (int i = 1; i < 1000; i++) {
+      assertTrue(
+          ExternalBreadthFirstSearch.compare(
+                  data, (i - 1) * wordCount, data, i * wordCount, wordCount)
+              <= 0);
+    }
+  }
+}
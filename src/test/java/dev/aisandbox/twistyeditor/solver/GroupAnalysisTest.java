@@ -0,0 +1,134 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.Cell;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.CuboidBuilder;
+import dev.aisandbox.twistyeditor.model.Loop;
+import dev.aisandbox.twistyeditor.model.Move;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@Slf4j
+public class GroupAnalysisTest {
+
+  private static Puzzle cuboid(int width, int height, int depth) throws IOException {
+    Puzzle puzzle = new Puzzle();
+    ObservableList<Cell> cells = FXCollections.observableList(puzzle.getCells());
+    ObservableList<Move> moves = FXCollections.observableList(puzzle.getMoves());
+    new CuboidBuilder(cells, moves, width, height, depth).createCuboid();
+    puzzle.compileMoves();
+    return puzzle;
+  }
+
+  @Test
+  @DisplayName("Finds the order of the 3x3x3 group")
+  public void cubeTest() {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    cube.compileMoves();
+    GroupAnalysis analysis = GroupAnalysis.analyse(cube);
+    assertTrue(analysis.isWellFormed());
+    // the 43 quintillion positions, times 24 ways to hold the cube
+    assertEquals(new BigInteger("43252003274489856000").multiply(BigInteger.valueOf(24)),
+        analysis.getOrder());
+    // corner, edge and centre stickers
+    assertEquals(3, analysis.getOrbits().size());
+    assertEquals(24, analysis.getOrbits().get(0).size());
+    assertEquals(6, analysis.getOrbits().get(2).size());
+  }
+
+  @Test
+  @DisplayName("Finds the order of the 2x2x2 group")
+  public void pocketCubeTest() throws IOException {
+    GroupAnalysis analysis = GroupAnalysis.analyse(cuboid(2, 2, 2));
+    assertEquals(BigInteger.valueOf(3674160L * 24), analysis.getOrder());
+    assertEquals(1, analysis.getOrbits().size());
+  }
+
+  @Test
+  @DisplayName("Completes the chain when the random phase stops straight away")
+  public void checkedTest() throws IOException {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    cube.compileMoves();
+    assertEquals(new BigInteger("43252003274489856000").multiply(BigInteger.valueOf(24)),
+        unconfirmedOrder(cube));
+    // one orbit, so checked with Schreier generators rather than the orbit bound
+    assertEquals(BigInteger.valueOf(3674160L * 24), unconfirmedOrder(cuboid(2, 2, 2)));
+  }
+
+  private static BigInteger unconfirmedOrder(Puzzle puzzle) {
+    int n = puzzle.getCells().size();
+    List<int[]> generators = new ArrayList<>();
+    for (CompiledMove move : puzzle.getCompiledMoves().values()) {
+      int[] matrix = new int[n];
+      for (int i = 0; i < n; i++) {
+        matrix[i] = move.getMatrixElement(i);
+      }
+      generators.add(matrix);
+    }
+    return new PermutationGroup(n, generators, 0, new Random(0)).getOrder();
+  }
+
+  @Test
+  @DisplayName("Reports cells used twice in a move")
+  public void malformedTest() {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    Move move = cube.getMoves().get(0);
+    Loop loop = new Loop();
+    loop.getCells().addAll(Arrays.asList(
+        move.getLoops().get(0).getCells().get(0), cube.getCells().get(4)));
+    move.getLoops().add(loop);
+    move.markDirty();
+    cube.compileMoves();
+    GroupAnalysis analysis = GroupAnalysis.analyse(cube);
+    assertFalse(analysis.isWellFormed());
+    log.info("Problems {}", analysis.getProblems());
+    assertEquals(2, analysis.getProblems().size());
+  }
+
+  @Test
+  @DisplayName("Reports compiled moves that point outside the puzzle")
+  public void outOfRangeTest() throws IOException {
+    Puzzle cube = cuboid(2, 2, 2);
+    int[] matrix = new int[cube.getCells().size()];
+    for (int i = 0; i < matrix.length; i++) {
+      matrix[i] = i;
+    }
+    matrix[3] = -1;
+    cube.getCompiledMoves().put("bad", new CompiledMove(matrix));
+    GroupAnalysis analysis = GroupAnalysis.analyse(cube);
+    assertFalse(analysis.isWellFormed());
+    assertEquals(1, analysis.getProblems().size());
+    // the bad move is left out of the group
+    assertEquals(BigInteger.valueOf(3674160L * 24), analysis.getOrder());
+  }
+
+  @Test
+  @DisplayName("Analyses a 10x10x10 quickly")
+  public void largeTest() throws IOException {
+    Puzzle puzzle = cuboid(10, 10, 10);
+    GroupAnalysis analysis = GroupAnalysis.analyse(puzzle);
+    log.info(
+        "10x10x10 order has {} digits, found in {}ms",
+        analysis.getOrder().toString().length(),
+        analysis.getElapsedNanos() / 1000000);
+    assertTrue(analysis.isWellFormed());
+    // with the order checked exactly, not just the random phase
+    assertTrue(analysis.getElapsedNanos() < 1000000000L);
+  }
+}
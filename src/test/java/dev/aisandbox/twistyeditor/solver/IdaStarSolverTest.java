@@ -0,0 +1,96 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.AlgorithmCompiler;
+import dev.aisandbox.twistyeditor.model.ColourEnum;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@Slf4j
+public class IdaStarSolverTest {
+
+  static Puzzle cube;
+  static PatternDatabase database;
+
+  @BeforeAll
+  public static void setup() {
+    cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    // the saved compiled moves predate the rotations costing nothing
+    cube.compileMoves();
+    database = PatternDatabase.build(cube, 0, 8, 29);
+  }
+
+  private static void assertSolves(CompiledMove scramble, Solution solution) {
+    String state = scramble.applyMove(ColourEnum.decodeState(cube.getInitialState()));
+    CompiledMove moves = new AlgorithmCompiler(cube).compile(String.join(" ", solution.getMoves()));
+    assertEquals(ColourEnum.decodeState(cube.getInitialState()), moves.applyMove(state));
+  }
+
+  @Test
+  @DisplayName("Finds lowest cost solutions")
+  public void solveTest() {
+    AlgorithmCompiler compiler = new AlgorithmCompiler(cube);
+    IdaStarSolver solver = new IdaStarSolver(cube, Collections.singletonList(database));
+    for (String scramble : Arrays.asList("R", "R U", "F R2 D'", "R U R' U'")) {
+      CompiledMove position = compiler.compile(scramble);
+      Solution solution = solver.solve(position).get();
+      log.info("{} solved by {} using {} nodes", scramble, solution, solution.getNodes());
+      assertSolves(position, solution);
+      assertEquals(AlgorithmCompiler.parse(scramble).size(), solution.getCost());
+    }
+  }
+
+  @Test
+  @DisplayName("Rotations cost nothing")
+  public void zeroCostTest() {
+    AlgorithmCompiler compiler = new AlgorithmCompiler(cube);
+    IdaStarSolver solver = new IdaStarSolver(cube, Collections.emptyList());
+    // a rotated cube is solved by rotating it back
+    CompiledMove position = compiler.compile("x y");
+    Solution solution = solver.solve(position).get();
+    assertEquals(0, solution.getCost());
+    assertSolves(position, solution);
+    // and the rotations don't count towards the cost
+    position = compiler.compile("y R x'");
+    solution = solver.solve(position).get();
+    assertEquals(1, solution.getCost());
+    assertSolves(position, solution);
+  }
+
+  @Test
+  @DisplayName("Pattern database never overestimates and survives saving")
+  public void databaseTest(@TempDir Path dir) throws IOException {
+    AlgorithmCompiler compiler = new AlgorithmCompiler(cube);
+    IdaStarSolver solver = new IdaStarSolver(cube, Collections.emptyList());
+    Path file = dir.resolve("cube.pdb");
+    database.save(file);
+    PatternDatabase loaded = PatternDatabase.load(file);
+    assertEquals(database.getEntryCount(), loaded.getEntryCount());
+    assertTrue(Arrays.equals(database.getTrackedCells(), loaded.getTrackedCells()));
+    List<String> scrambles = Arrays.asList("R", "U2 F", "x R U'", "L D B");
+    for (String scramble : scrambles) {
+      CompiledMove position = compiler.compile(scramble);
+      int[] where = new int[position.getCardinality()];
+      for (int p = 0; p < where.length; p++) {
+        where[position.getMatrixElement(p)] = p;
+      }
+      int estimate = database.lookup(where);
+      assertEquals(estimate, loaded.lookup(where));
+      assertTrue(estimate <= solver.solve(position).get().getCost());
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class MovePruningTest {
+
+  static Puzzle cube;
+
+  @BeforeAll
+  public static void setup() {
+    cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    cube.compileMoves();
+  }
+
+  @Test
+  @DisplayName("Finds inverses, commuting pairs and products")
+  public void analysisTest() {
+    MovePruning pruning = new MovePruning(cube);
+    int r = pruning.indexOf("R");
+    int rPrime = pruning.indexOf("R'");
+    int r2 = pruning.indexOf("R2");
+    int l = pruning.indexOf("L");
+    int u = pruning.indexOf("U");
+    assertEquals(rPrime, pruning.getInverse(r));
+    assertEquals(r2, pruning.getInverse(r2));
+    assertEquals(r2, pruning.getProduct(r, r));
+    assertTrue(pruning.commutes(r, l));
+    assertFalse(pruning.commutes(r, u));
+    // undoing, or doing what a single move could
+    assertFalse(pruning.isAllowed(r, rPrime));
+    assertFalse(pruning.isAllowed(r, r));
+    assertFalse(pruning.isAllowed(r2, r2));
+    assertTrue(pruning.isAllowed(r, u));
+    assertTrue(pruning.isAllowed(MovePruning.NONE, r));
+    // commuting moves only in one order
+    assertNotEquals(pruning.isAllowed(r, l), pruning.isAllowed(l, r));
+  }
+
+  @Test
+  @DisplayName("Three in a row is skipped when there is no half turn")
+  public void tripleTest() {
+    Map<String, CompiledMove> moves = new TreeMap<>();
+    moves.put("R", cube.getCompiledMoves().get("R"));
+    moves.put("R'", cube.getCompiledMoves().get("R'"));
+    MovePruning pruning = new MovePruning(moves);
+    int r = pruning.indexOf("R");
+    assertTrue(pruning.isAllowed(r, r));
+    assertTrue(pruning.isAllowed(MovePruning.NONE, r, r));
+    assertFalse(pruning.isAllowed(r, r, r));
+  }
+
+  @Test
+  @DisplayName("Every position up to three moves is still reached at its lowest cost")
+  public void keepsLowestCostTest() {
+    Map<String, CompiledMove> costed = new TreeMap<>();
+    cube.getCompiledMoves().forEach((name, move) -> {
+      if (move.getCost() > 0) {
+        costed.put(name, move);
+      }
+    });
+    MovePruning pruning = new MovePruning(costed);
+    CompiledMove[] moves = costed.values().toArray(new CompiledMove[0]);
+    Map<String, Integer> all = new HashMap<>();
+    Map<String, Integer> kept = new HashMap<>();
+    int[] sequence = new int[3];
+    walk(pruning, moves, CompiledMove.identity(54), 0, 0, sequence, true, all, kept);
+    // all three move sequences again, without pruning
+    walk(pruning, moves, CompiledMove.identity(54), 0, 0, sequence, false, all, kept);
+    assertEquals(all, kept);
+    assertTrue(all.size() > 1000);
+  }
+
+  private static void walk(
+      MovePruning pruning,
+      CompiledMove[] moves,
+      CompiledMove position,
+      int depth,
+      int cost,
+      int[] sequence,
+      boolean prune,
+      Map<String, Integer> all,
+      Map<String, Integer> kept) {
+    Map<String, Integer> target = prune ? kept : all;
+    target.merge(key(position), cost, Math::min);
+    if (depth == sequence.length) {
+      return;
+    }
+    int last = depth > 0 ? sequence[depth - 1] : MovePruning.NONE;
+    int secondLast = depth > 1 ? sequence[depth - 2] : MovePruning.NONE;
+    for (int m = 0; m < moves.length; m++) {
+      if (prune && !pruning.isAllowed(secondLast, last, m)) {
+        continue;
+      }
+      sequence[depth] = m;
+      walk(
+          pruning,
+          moves,
+          position.then(moves[m]),
+          depth + 1,
+          cost + moves[m].getCost(),
+          sequence,
+          prune,
+          all,
+          kept);
+    }
+  }
+
+  private static String key(CompiledMove move) {
+    int[] matrix = new int[move.getCardinality()];
+    for (int i = 0; i < matrix.length; i++) {
+      matrix[i] = move.getMatrixElement(i);
+    }
+    return Arrays.toString(matrix);
+  }
+}
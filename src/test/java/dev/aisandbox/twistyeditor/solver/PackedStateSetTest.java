@@ -0,0 +1,34 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class PackedStateSetTest {
+
+  @Test
+  @DisplayName("Set keeps every state as it grows")
+  public void growTest() {
+    PackedStateSet set = new PackedStateSet(2, 1);
+    long[] state = new long[2];
+    // the all zero state is a valid state
+    assertTrue(set.add(state, 0));
+    assertFalse(set.add(state, 0));
+    for (int i = 1; i < 10000; i++) {
+      state[0] = i;
+      state[1] = i * 31L;
+      assertTrue(set.add(state, 0));
+    }
+    assertEquals(10000, set.getSize());
+    for (int i = 0; i < 10000; i++) {
+      state[0] = i;
+      state[1] = i * 31L;
+      assertTrue(set.contains(state, 0));
+    }
+    state[1] = 1;
+    assertFalse(set.contains(state, 0));
+  }
+}
@@ -0,0 +1,107 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.AlgorithmCompiler;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@Slf4j
+public class PuzzleSymmetryTest {
+
+  static final List<String> FACE_TURNS =
+      Arrays.asList(
+          "F", "F'", "F2", "B", "B'", "B2", "U", "U'", "U2", "D", "D'", "D2", "R", "R'", "R2", "L",
+          "L'", "L2");
+
+  static Puzzle cube;
+
+  @BeforeAll
+  public static void setup() {
+    cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    // the saved compiled moves predate the rotations costing nothing
+    cube.compileMoves();
+  }
+
+  private static byte[] scramble(String moves) {
+    byte[] state = cube.getInitialState();
+    new AlgorithmCompiler(cube).compile(moves).applyMove(state);
+    return state;
+  }
+
+  @Test
+  @DisplayName("A cube has 24 rotational symmetries")
+  public void detectTest() {
+    assertEquals(24, new PuzzleSymmetry(cube).getSymmetryCount());
+    assertEquals(24, new PuzzleSymmetry(cube, FACE_TURNS).getSymmetryCount());
+    // the symmetries must keep the moves, only a half turn about the UR edge swaps R and U
+    assertEquals(2, new PuzzleSymmetry(cube, Arrays.asList("R", "U")).getSymmetryCount());
+  }
+
+  @Test
+  @DisplayName("Symmetric states share a representative")
+  public void canonicalTest() {
+    PuzzleSymmetry symmetry = new PuzzleSymmetry(cube);
+    byte[] r = symmetry.canonicalise(scramble("R"));
+    assertArrayEquals(r, symmetry.canonicalise(scramble("U")));
+    assertArrayEquals(r, symmetry.canonicalise(scramble("x F x'")));
+    assertArrayEquals(r, symmetry.canonicalise(r));
+    assertFalse(Arrays.equals(r, symmetry.canonicalise(scramble("R'"))));
+    assertArrayEquals(cube.getInitialState(), symmetry.canonicalise(cube.getInitialState()));
+  }
+
+  @Test
+  @DisplayName("Reduced search counts the symmetry classes at each depth")
+  public void searchTest() {
+    PuzzleSymmetry symmetry = new PuzzleSymmetry(cube, FACE_TURNS);
+    BreadthFirstSearch bfs = new BreadthFirstSearch(cube, FACE_TURNS);
+    bfs.setMaxDepth(3);
+    bfs.setSymmetry(symmetry);
+    ExplorationResult reduced = bfs.explore();
+    // the full search, with the states reduced afterwards
+    List<CompiledMove> moves = new ArrayList<>();
+    for (String name : FACE_TURNS) {
+      moves.add(cube.getCompiledMoves().get(name));
+    }
+    Set<String> seen = new HashSet<>();
+    List<byte[]> frontier = new ArrayList<>();
+    frontier.add(cube.getInitialState());
+    seen.add(Arrays.toString(cube.getInitialState()));
+    List<Long> expected = new ArrayList<>();
+    expected.add(1L);
+    long full = 1;
+    for (int depth = 0; depth < 3; depth++) {
+      List<byte[]> next = new ArrayList<>();
+      Set<String> classes = new HashSet<>();
+      for (byte[] state : frontier) {
+        for (CompiledMove move : moves) {
+          byte[] child = new byte[state.length];
+          move.applyMove(state, child);
+          if (seen.add(Arrays.toString(child))) {
+            next.add(child);
+            classes.add(Arrays.toString(symmetry.canonicalise(child)));
+          }
+        }
+      }
+      expected.add((long) classes.size());
+      full += next.size();
+      frontier = next;
+    }
+    log.info("{} states reduced to {}", full, reduced.getStateCount());
+    assertEquals(expected, reduced.getHistogram());
+    assertEquals(Arrays.asList(1L, 3L), reduced.getHistogram().subList(0, 2));
+  }
+}
@@ -0,0 +1,72 @@
+package dev.aisandbox.twistyeditor.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import dev.aisandbox.twistyeditor.PuzzleUtil;
+import dev.aisandbox.twistyeditor.model.AlgorithmCompiler;
+import dev.aisandbox.twistyeditor.model.ColourEnum;
+import dev.aisandbox.twistyeditor.model.CompiledMove;
+import dev.aisandbox.twistyeditor.model.Move;
+import dev.aisandbox.twistyeditor.model.Puzzle;
+import java.io.File;
+import java.util.Arrays;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@Slf4j
+public class UniformCostSearchTest {
+
+  private static void assertSolves(Puzzle puzzle, CompiledMove scramble, Solution solution) {
+    String solved = ColourEnum.decodeState(puzzle.getInitialState());
+    CompiledMove moves =
+        new AlgorithmCompiler(puzzle).compile(String.join(" ", solution.getMoves()));
+    assertEquals(solved, moves.applyMove(scramble.applyMove(solved)));
+  }
+
+  @Test
+  @DisplayName("Finds lowest cost solutions with free rotations")
+  public void cubeTest() {
+    Puzzle cube = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Cube3.tp"));
+    // the saved compiled moves predate the rotations costing nothing
+    cube.compileMoves();
+    AlgorithmCompiler compiler = new AlgorithmCompiler(cube);
+    UniformCostSearch search = new UniformCostSearch(cube);
+    for (String scramble : Arrays.asList("x y", "R", "y R x'", "R U", "F R2 D'")) {
+      CompiledMove position = compiler.compile(scramble);
+      Solution solution = search.solve(position).get();
+      log.info("{} solved by {} using {} nodes", scramble, solution, solution.getNodes());
+      assertEquals(position.getCost(), solution.getCost());
+      assertSolves(cube, position, solution);
+    }
+  }
+
+  @Test
+  @DisplayName("Takes cheaper moves over fewer moves")
+  public void costTest() {
+    Puzzle pyramid = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Pyramid3.tp"));
+    for (Move move : pyramid.getMoves()) {
+      if (move.getName().equals("u")) {
+        move.setCost(3);
+      }
+    }
+    pyramid.compileMoves();
+    CompiledMove position = new AlgorithmCompiler(pyramid).compile("u'");
+    Solution solution = new UniformCostSearch(pyramid).solve(position).get();
+    // two turns the other way are cheaper than one expensive turn
+    assertEquals(Arrays.asList("u'", "u'"), solution.getMoves());
+    assertEquals(2, solution.getCost());
+    assertSolves(pyramid, position, solution);
+  }
+
+  @Test
+  @DisplayName("Gives up past the cost limit")
+  public void limitTest() {
+    Puzzle pyramid = (Puzzle) PuzzleUtil.getCodec().fromXML(new File("Pyramid3.tp"));
+    pyramid.compileMoves();
+    UniformCostSearch search = new UniformCostSearch(pyramid);
+    search.setMaxCost(2);
+    assertFalse(search.solve(new AlgorithmCompiler(pyramid).compile("L R U")).isPresent());
+  }
+}